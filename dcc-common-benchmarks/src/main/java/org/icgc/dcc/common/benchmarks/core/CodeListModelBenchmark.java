@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.common.benchmarks.core;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.icgc.dcc.common.core.json.Jackson.DEFAULT;
+import static org.icgc.dcc.common.core.model.Dictionaries.CODELIST_CODE_KEY;
+import static org.icgc.dcc.common.core.model.Dictionaries.CODELIST_KEY;
+import static org.icgc.dcc.common.core.model.Dictionaries.CODELIST_NAME_KEY;
+import static org.icgc.dcc.common.core.model.Dictionaries.CODELIST_VALUE_KEY;
+import static org.icgc.dcc.common.core.model.Dictionaries.CONFIG_KEY;
+import static org.icgc.dcc.common.core.model.Dictionaries.CONFIG_NAME_KEY;
+import static org.icgc.dcc.common.core.model.Dictionaries.FIELDS_KEY;
+import static org.icgc.dcc.common.core.model.Dictionaries.FIELD_NAME_KEY;
+import static org.icgc.dcc.common.core.model.Dictionaries.FILE_SCHEMATA_KEY;
+import static org.icgc.dcc.common.core.model.Dictionaries.FILE_SCHEMA_NAME_KEY;
+import static org.icgc.dcc.common.core.model.Dictionaries.RESTRICTIONS_KEY;
+import static org.icgc.dcc.common.core.model.Dictionaries.TERMS_KEY;
+import static org.icgc.dcc.common.core.model.Dictionaries.TYPE_KEY;
+
+import org.icgc.dcc.common.core.model.Dictionaries.CodeListModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.val;
+
+/**
+ * Building the code list model of a synthetic dictionary where half of the fields are restricted by a code list.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Benchmark)
+public class CodeListModelBenchmark {
+
+  private static final String[] FILE_TYPES = { "donor", "specimen", "sample", "ssm_m", "ssm_p", "cnsm_m", "cnsm_p" };
+  private static final int TERM_COUNT = 20;
+
+  @Param({ "40" })
+  public int fieldCount;
+
+  private JsonNode dictionary;
+  private JsonNode codeLists;
+
+  @Setup
+  public void setUp() {
+    val files = DEFAULT.createArrayNode();
+    val lists = DEFAULT.createArrayNode();
+    for (val fileType : FILE_TYPES) {
+      val fields = files.addObject()
+          .put(FILE_SCHEMA_NAME_KEY, fileType)
+          .putArray(FIELDS_KEY);
+
+      for (int i = 0; i < fieldCount; i++) {
+        val fieldName = fileType + "_field_" + i;
+        val restrictions = fields.addObject()
+            .put(FIELD_NAME_KEY, fieldName)
+            .putArray(RESTRICTIONS_KEY);
+        if (i % 2 == 0) {
+          val codeListName = fieldName + "_codes";
+          restrictions.addObject()
+              .put(TYPE_KEY, CODELIST_KEY)
+              .putObject(CONFIG_KEY).put(CONFIG_NAME_KEY, codeListName);
+
+          val terms = lists.addObject()
+              .put(CODELIST_NAME_KEY, codeListName)
+              .putArray(TERMS_KEY);
+          for (int j = 0; j < TERM_COUNT; j++) {
+            terms.addObject()
+                .put(CODELIST_CODE_KEY, String.valueOf(j))
+                .put(CODELIST_VALUE_KEY, "value " + j);
+          }
+        }
+      }
+    }
+
+    dictionary = DEFAULT.createObjectNode().set(FILE_SCHEMATA_KEY, files);
+    codeLists = lists;
+  }
+
+  @Benchmark
+  public CodeListModel getInstance() {
+    return CodeListModel.getInstance(dictionary, codeLists);
+  }
+
+}
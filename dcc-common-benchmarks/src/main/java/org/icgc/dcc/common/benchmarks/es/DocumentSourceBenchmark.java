@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.common.benchmarks.es;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.icgc.dcc.common.core.json.Jackson.DEFAULT;
+
+import java.io.IOException;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.icgc.dcc.dcc.common.es.impl.DefaultDocumentWriter;
+import org.icgc.dcc.dcc.common.es.impl.SourceSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import lombok.val;
+
+/**
+ * Serialization of a document source by the {@link SourceSerializer} of the {@link DefaultDocumentWriter}, straight
+ * into the SMILE buffer of the index request, compared to plain JSON.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Benchmark)
+public class DocumentSourceBenchmark {
+
+  /**
+   * Number of nested observations of a donor-like document.
+   */
+  @Param({ "10", "1000" })
+  public int observationCount;
+
+  private ObjectNode document;
+  private SourceSerializer sourceSerializer;
+
+  @Setup
+  public void setUp() {
+    sourceSerializer = new SourceSerializer();
+    document = DEFAULT.createObjectNode()
+        .put("_donor_id", "DO12345")
+        .put("_project_id", "BRCA-US")
+        .put("donor_sex", "female")
+        .put("donor_age_at_diagnosis", 57);
+
+    val observations = document.putArray("ssm");
+    for (int i = 0; i < observationCount; i++) {
+      observations.addObject()
+          .put("_mutation_id", "MU" + i)
+          .put("chromosome", String.valueOf(i % 22 + 1))
+          .put("chromosome_start", 1_000_000 + i)
+          .put("chromosome_end", 1_000_000 + i)
+          .put("mutation_type", "single base substitution")
+          .put("consequence_type", "missense_variant");
+    }
+  }
+
+  @Benchmark
+  public BytesReference smile() throws IOException {
+    return sourceSerializer.serialize(document);
+  }
+
+  @Benchmark
+  public byte[] json() throws JsonProcessingException {
+    return DEFAULT.writeValueAsBytes(document);
+  }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.common.benchmarks.hadoop;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.hadoop.fs.Path;
+import org.icgc.dcc.common.hadoop.parser.FileParser;
+import org.icgc.dcc.common.hadoop.parser.FileParsers;
+import org.icgc.dcc.common.hadoop.parser.TsvRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing a synthetic {@code ssm_p} file from the local file system.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@State(Scope.Benchmark)
+public class FileParserBenchmark {
+
+  @Param({ "100000" })
+  public long lineCount;
+
+  private File file;
+  private Path path;
+  private FileParser<String[]> arrayParser;
+  private FileParser<Iterable<String>> iterableParser;
+  private FileParser<TsvRecord> tsvRecordParser;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    file = SyntheticSsm.createFile(lineCount);
+    path = new Path(file.toURI());
+    arrayParser = FileParsers.newArrayFileParser();
+    iterableParser = FileParsers.newIterableFileParser();
+    tsvRecordParser = FileParsers.newTsvRecordFileParser();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Benchmark
+  public long parseArray(Blackhole blackhole) throws IOException {
+    return arrayParser.parse(path, (lineNumber, record) -> blackhole.consume(record));
+  }
+
+  @Benchmark
+  public long parseIterable(Blackhole blackhole) throws IOException {
+    return iterableParser.parse(path, (lineNumber, record) -> {
+      for (String field : record) {
+        blackhole.consume(field);
+      }
+    });
+  }
+
+  @Benchmark
+  public long parseTsvRecord(Blackhole blackhole) throws IOException {
+    return tsvRecordParser.parse(path, (lineNumber, record) -> {
+      blackhole.consume(record.getString(1));
+      blackhole.consume(record.getLong(4));
+    });
+  }
+
+}
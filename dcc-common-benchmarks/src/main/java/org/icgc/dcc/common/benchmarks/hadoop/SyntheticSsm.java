@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.common.benchmarks.hadoop;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.icgc.dcc.common.core.util.Joiners;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import lombok.Cleanup;
+import lombok.NoArgsConstructor;
+import lombok.val;
+
+/**
+ * Generates tab separated lines resembling {@code ssm_p} submission files.
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class SyntheticSsm {
+
+  private static final String[] HEADER = {
+      "analysis_id", "analyzed_sample_id", "mutation_type", "chromosome", "chromosome_start", "chromosome_end",
+      "chromosome_strand", "reference_genome_allele", "control_genotype", "tumour_genotype", "mutated_from_allele",
+      "mutated_to_allele", "quality_score", "probability", "total_read_count", "mutant_allele_read_count",
+      "verification_status", "verification_platform", "biological_validation_status",
+      "biological_validation_platform", "note" };
+
+  public static String getHeader() {
+    return Joiners.TAB.join(HEADER);
+  }
+
+  public static String getLine(long i) {
+    val start = 1_000_000 + i * 17;
+
+    return Joiners.TAB.join(
+        "AN" + i % 100, "SA" + i % 1000, "1", String.valueOf(i % 22 + 1), start, start, "1", "A", "A/A", "A/G",
+        "A", "G", "-888", "-888", 42, 7, "2", "-888", "2", "-888", "");
+  }
+
+  public static File createFile(long lineCount) throws IOException {
+    val file = File.createTempFile("ssm_p", ".txt");
+    file.deleteOnExit();
+
+    @Cleanup
+    Writer writer = Files.newWriter(file, Charsets.UTF_8);
+    writer.write(getHeader());
+    writer.write('\n');
+    for (long i = 0; i < lineCount; i++) {
+      writer.write(getLine(i));
+      writer.write('\n');
+    }
+
+    return file;
+  }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.common.benchmarks.tcga;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+
+import org.icgc.dcc.common.tcga.core.TCGAMappings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableSet;
+
+import lombok.val;
+
+/**
+ * Barcode and UUID lookups in mappings of the size of a TCGA release.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+public class TCGAMappingsBenchmark {
+
+  private static final int BATCH_SIZE = 100;
+
+  @Param({ "500000" })
+  public int mappingCount;
+
+  private TCGAMappings mappings;
+  private String uuid;
+  private String barcode;
+  private Set<String> uuids;
+  private Set<String> barcodes;
+
+  @Setup
+  public void setUp() {
+    val properties = new Properties();
+    val uuidBatch = ImmutableSet.<String> builder();
+    val barcodeBatch = ImmutableSet.<String> builder();
+    for (int i = 0; i < mappingCount; i++) {
+      val uuid = UUID.nameUUIDFromBytes(String.valueOf(i).getBytes()).toString();
+      val barcode = String.format("TCGA-%02d-%04d-01A-01D-%04d-08", i % 100, i % 10000, i);
+      properties.setProperty(uuid, barcode);
+
+      if (i < BATCH_SIZE) {
+        uuidBatch.add(uuid);
+        barcodeBatch.add(barcode);
+      }
+    }
+
+    mappings = new TCGAMappings(properties);
+    uuids = uuidBatch.build();
+    barcodes = barcodeBatch.build();
+    uuid = uuids.iterator().next();
+    barcode = barcodes.iterator().next();
+  }
+
+  @Benchmark
+  public String getBarcode() {
+    return mappings.getBarcode(uuid);
+  }
+
+  @Benchmark
+  public String getUUID() {
+    return mappings.getUUID(barcode);
+  }
+
+  @Benchmark
+  public Map<String, String> getBarcodes() {
+    return mappings.getBarcodes(uuids);
+  }
+
+  @Benchmark
+  public Map<String, String> getUUIDs() {
+    return mappings.getUUIDs(barcodes);
+  }
+
+}
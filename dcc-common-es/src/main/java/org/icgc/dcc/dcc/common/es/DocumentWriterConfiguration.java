@@ -17,7 +17,10 @@
  */
 package org.icgc.dcc.dcc.common.es;
 
+import java.util.function.Function;
+
 import org.elasticsearch.client.Client;
+import org.icgc.dcc.dcc.common.es.core.DeadLetterSink;
 
 import lombok.Data;
 import lombok.experimental.Accessors;
@@ -29,6 +32,101 @@ public class DocumentWriterConfiguration {
   String esUrl;
   String indexName;
   Client client;
+
+  /**
+   * Maximum size of a bulk request. When {@code adaptiveBulkSize} is enabled, the upper bound of the adjusted size.
+   */
   Integer bulkSizeMb;
 
+  /**
+   * Maximum number of documents in a bulk request. Unlimited by default.
+   */
+  Integer bulkActions;
+
+  /**
+   * Flushes the accumulated documents every {@code flushIntervalSeconds} regardless of the bulk size. Disabled by
+   * default.
+   */
+  Integer flushIntervalSeconds;
+
+  /**
+   * Adjusts the bulk size to keep the bulk requests processing time close to {@code targetBulkLatencyMs}. The size is
+   * also shrunk when bulk requests fail and halved when the cluster rejects them.
+   */
+  Boolean adaptiveBulkSize;
+  Integer targetBulkLatencyMs;
+
+  /**
+   * Number of bulk requests allowed to execute while new documents are accumulated. {@code 0} means the caller is
+   * blocked until each bulk request completes.
+   */
+  Integer concurrentRequests;
+
+  /**
+   * Maximum number of bulk requests (including re-submitted failed requests) that may be outstanding before
+   * {@code write()} blocks. Defaults to {@code concurrentRequests + 1}.
+   */
+  Integer maxInFlightRequests;
+
+  /**
+   * Number of writers used by {@link DocumentWriterFactory#createParallelDocumentWriter}. Defaults to the number of
+   * available processors.
+   */
+  Integer parallelism;
+
+  /**
+   * Receives requests which failed with a non-retryable error or exhausted their retries. Logs them by default.
+   */
+  DeadLetterSink deadLetterSink;
+
+  /**
+   * Number of consecutive times failed bulk items are retried before they are sent to the {@code deadLetterSink}.
+   * {@code 0} disables retries, which also saves tracking the latest write of each document. Defaults to 10.
+   */
+  Integer maxRetries;
+
+  /**
+   * Disables refreshes and replicas of the index while writing and restores them once the last writer of the index is
+   * closed. Intended for the initial load of a fresh index. {@code asyncTranslog} additionally disables translog fsync
+   * on each request. {@code maxSegments} force-merges the index on close.
+   */
+  Boolean bulkLoadMode;
+  Boolean asyncTranslog;
+  Integer maxSegments;
+
+  /**
+   * Local directory where documents are spooled while the cluster is RED or unreachable. They are replayed once the
+   * cluster recovers, or by the next writer using the same directory, in which case closing the writer fails. Must not
+   * be shared by writers running at the same time. Disabled by default.
+   */
+  String spoolDir;
+
+  /**
+   * Assigns documents of a parallel writer to its writers by the primary shard of the index they are routed to, so
+   * each bulk request only targets the shards of its writer. A {@code parallelism} equal to the number of primary
+   * shards, or a divisor of it, gives bulk requests targeting a fixed set of shards. Requires an existing index.
+   */
+  Boolean shardAware;
+
+  /**
+   * Maps document ids to the key by which a parallel writer assigns documents to its writers, e.g. so that all the
+   * documents of a donor are written in order by the same writer. Document ids are used by default. Ignored if
+   * {@code shardAware}. Doesn't affect the {@code _routing} of the documents.
+   */
+  Function<String, String> routingKey;
+
+  /**
+   * Buffers up to {@code coalesceMaxDocuments} documents for at most {@code coalesceWindowMs} and writes only the last
+   * version of each document id and type. Disabled by default.
+   */
+  Integer coalesceMaxDocuments;
+  Long coalesceWindowMs;
+
+  /**
+   * Local file where {@link DocumentWriterFactory#createResumableDocumentWriter} persists its checkpoint every
+   * {@code checkpointIntervalSeconds} (30 by default).
+   */
+  String checkpointFile;
+  Integer checkpointIntervalSeconds;
+
 }
@@ -17,12 +17,24 @@
  */
 package org.icgc.dcc.dcc.common.es;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static lombok.AccessLevel.PRIVATE;
+import static org.elasticsearch.common.unit.ByteSizeUnit.MB;
 import static org.icgc.dcc.dcc.common.es.impl.DocumentWriterContextFactory.createContext;
+import static org.icgc.dcc.dcc.common.es.impl.DocumentWriterContextFactory.createContexts;
+
+import java.nio.file.Paths;
 
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.icgc.dcc.dcc.common.es.core.AsyncDocumentWriter;
 import org.icgc.dcc.dcc.common.es.core.DocumentWriter;
+import org.icgc.dcc.dcc.common.es.core.ResumableDocumentWriter;
+import org.icgc.dcc.dcc.common.es.impl.CheckpointingDocumentWriter;
+import org.icgc.dcc.dcc.common.es.impl.CoalescingDocumentWriter;
 import org.icgc.dcc.dcc.common.es.impl.DefaultDocumentWriter;
+import org.icgc.dcc.dcc.common.es.impl.MemoryBudget;
+import org.icgc.dcc.dcc.common.es.impl.ParallelDocumentWriter;
 
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
@@ -31,12 +43,52 @@ import lombok.val;
 @NoArgsConstructor(access = PRIVATE)
 public final class DocumentWriterFactory {
 
+  private static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+  private static final long DEFAULT_COALESCE_WINDOW_MS = 5000;
+  private static final int DEFAULT_CHECKPOINT_INTERVAL_SECONDS = 30;
+
   public static DocumentWriter createDocumentWriter(@NonNull DocumentWriterConfiguration configuration) {
     val writerContext = createContext(configuration);
 
+    return coalesce(configuration, new DefaultDocumentWriter(writerContext));
+  }
+
+  /**
+   * Creates document writer which acknowledges each written document.
+   */
+  public static AsyncDocumentWriter createAsyncDocumentWriter(@NonNull DocumentWriterConfiguration configuration) {
+    val writerContext = createContext(configuration);
+
     return new DefaultDocumentWriter(writerContext);
   }
 
+  /**
+   * Creates document writer which checkpoints the acknowledged input to {@code checkpointFile}. The checkpoint of an
+   * interrupted previous session is returned by {@link ResumableDocumentWriter#getCheckpoint()}.
+   */
+  public static ResumableDocumentWriter createResumableDocumentWriter(
+      @NonNull DocumentWriterConfiguration configuration) {
+    checkArgument(configuration.checkpointFile() != null, "Checkpoint file is required");
+    val checkpointInterval = configuration.checkpointIntervalSeconds() != null ?
+        configuration.checkpointIntervalSeconds() :
+        DEFAULT_CHECKPOINT_INTERVAL_SECONDS;
+    val writer = createAsyncDocumentWriter(configuration);
+
+    return new CheckpointingDocumentWriter(writer, Paths.get(configuration.checkpointFile()), checkpointInterval);
+  }
+
+  /**
+   * Creates document writer which shards documents by id across {@code parallelism} writers. Each writer has its own
+   * serialization thread and bulk processor. Documents are sharded by their {@code routingKey} if set, or by the target
+   * primary shard if {@code shardAware}.
+   */
+  public static DocumentWriter createParallelDocumentWriter(@NonNull DocumentWriterConfiguration configuration) {
+    val parallelism = configuration.parallelism() != null ? configuration.parallelism() : DEFAULT_PARALLELISM;
+    val writerContexts = createContexts(configuration, parallelism);
+
+    return coalesce(configuration, new ParallelDocumentWriter(writerContexts));
+  }
+
   /**
    * Creates document writer where the {@code sniffMode} is <strong>disabled</strong> for the {@link Client}.
    */
@@ -46,4 +98,30 @@ public final class DocumentWriterFactory {
     return new DefaultDocumentWriter(writerContext);
   }
 
+  /**
+   * Limits the bytes of documents buffered or being indexed by all the writers of this JVM. Producers are blocked
+   * while the limit is exceeded. Unlimited by default.
+   */
+  public static void setMemoryBudgetMb(int memoryBudgetMb) {
+    MemoryBudget.getGlobal().setLimitBytes(new ByteSizeValue(memoryBudgetMb, MB).getBytes());
+  }
+
+  /**
+   * @return bytes of documents buffered or being indexed by all the writers of this JVM
+   */
+  public static long getMemoryBudgetUsedBytes() {
+    return MemoryBudget.getGlobal().getUsedBytes();
+  }
+
+  private static DocumentWriter coalesce(DocumentWriterConfiguration configuration, DocumentWriter writer) {
+    if (configuration.coalesceMaxDocuments() == null) {
+      return writer;
+    }
+
+    val windowMs =
+        configuration.coalesceWindowMs() != null ? configuration.coalesceWindowMs() : DEFAULT_COALESCE_WINDOW_MS;
+
+    return new CoalescingDocumentWriter(writer, configuration.coalesceMaxDocuments(), windowMs);
+  }
+
 }
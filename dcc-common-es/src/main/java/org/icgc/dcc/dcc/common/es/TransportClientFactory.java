@@ -21,16 +21,26 @@ import static lombok.AccessLevel.PRIVATE;
 
 import java.net.InetAddress;
 import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.elasticsearch.client.Client;
+import org.elasticsearch.client.FilterClient;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
 import org.elasticsearch.transport.client.PreBuiltTransportClient;
+import org.icgc.dcc.common.core.util.Splitters;
+
+import com.google.common.collect.ImmutableList;
 
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
+import lombok.Value;
 import lombok.val;
 import lombok.extern.slf4j.Slf4j;
 
@@ -38,6 +48,12 @@ import lombok.extern.slf4j.Slf4j;
 @NoArgsConstructor(access = PRIVATE)
 public final class TransportClientFactory {
 
+  /**
+   * Shared clients by URI and sniff mode. Guarded by itself. Clients are created outside of this lock, so a slow client
+   * creation only blocks the callers acquiring the same client.
+   */
+  private static final Map<ClientKey, SharedClientHolder> SHARED_CLIENTS = new HashMap<>();
+
   /**
    * Creates a {@link TransportClient} with the {@code client.transport.sniff} set to {@code false}.
    */
@@ -47,17 +63,63 @@ public final class TransportClientFactory {
 
   /**
    * Creates a {@link TransportClient}.
+   * 
+   * @param esUri a URI or a comma-separated list of URIs of the cluster nodes
    */
-  @SneakyThrows
   @SuppressWarnings("resource")
   public static Client createClient(@NonNull String esUri, boolean sniff) {
-    val uri = new URI(esUri);
-    val host = InetAddress.getByName(uri.getHost());
-    val port = uri.getPort();
-    val address = new InetSocketTransportAddress(host, port);
+    val client = new PreBuiltTransportClient(createSettings(sniff));
+    for (val address : parseAddresses(esUri)) {
+      client.addTransportAddress(address);
+    }
+
+    return client;
+  }
+
+  /**
+   * Returns a handle of a {@link Client} shared by all the callers with the same {@code esUri} and {@code sniff}
+   * mode. The client is created on the first call. Each caller must close the returned handle, further closes of the
+   * same handle are ignored. The underlying {@link TransportClient} is closed when the last handle is closed.
+   */
+  public static Client acquireClient(@NonNull String esUri, boolean sniff) {
+    val key = new ClientKey(esUri, sniff);
+    SharedClientHolder holder;
+    synchronized (SHARED_CLIENTS) {
+      holder = SHARED_CLIENTS.computeIfAbsent(key, SharedClientHolder::new);
+      holder.users++;
+      log.debug("Acquired shared ES transport client '{}'. Users: {}", esUri, holder.users);
+    }
 
-    log.info("Creating ES transport client from URI '{}': host = '{}', port = {}", new Object[] { esUri, host, port });
-    return new PreBuiltTransportClient(createSettings(sniff)).addTransportAddress(address);
+    try {
+      return new ClientHandle(holder.getClient());
+    } catch (RuntimeException e) {
+      holder.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the shared client behind a handle returned by {@link #acquireClient(String, boolean)}, or {@code client}
+   * itself otherwise. Allows state to be kept per cluster connection rather than per handle.
+   */
+  public static Client getSharedClient(@NonNull Client client) {
+    return client instanceof ClientHandle ? ((ClientHandle) client).sharedClient : client;
+  }
+
+  @SneakyThrows
+  private static List<InetSocketTransportAddress> parseAddresses(String esUri) {
+    val addresses = ImmutableList.<InetSocketTransportAddress> builder();
+    for (val value : Splitters.COMMA.trimResults().omitEmptyStrings().split(esUri)) {
+      val uri = new URI(value);
+      val host = InetAddress.getByName(uri.getHost());
+      val port = uri.getPort();
+
+      log.info("Creating ES transport client from URI '{}': host = '{}', port = {}",
+          new Object[] { value, host, port });
+      addresses.add(new InetSocketTransportAddress(host, port));
+    }
+
+    return addresses.build();
   }
 
   /**
@@ -82,4 +144,108 @@ public final class TransportClientFactory {
         .build();
   }
 
+  @Value
+  private static class ClientKey {
+
+    String esUri;
+    boolean sniff;
+
+  }
+
+  /**
+   * Reference counts the {@link SharedClient} of a {@link ClientKey}. The client is created by the first user and
+   * closed once all its handles are closed.
+   */
+  @RequiredArgsConstructor
+  private static class SharedClientHolder {
+
+    private final ClientKey key;
+    // Guarded by SHARED_CLIENTS
+    private int users;
+    // Guarded by this
+    private SharedClient client;
+
+    private synchronized SharedClient getClient() {
+      if (client == null) {
+        client = new SharedClient(this, createClient(key.getEsUri(), key.isSniff()));
+      }
+
+      return client;
+    }
+
+    private void release() {
+      synchronized (SHARED_CLIENTS) {
+        users--;
+        log.debug("Released shared ES transport client '{}'. Users: {}", key.getEsUri(), users);
+        if (users > 0) {
+          return;
+        }
+
+        SHARED_CLIENTS.remove(key);
+      }
+
+      closeClient();
+    }
+
+    private synchronized void closeClient() {
+      if (client != null) {
+        log.info("Closing shared ES transport client '{}'", key.getEsUri());
+        client.closeDelegate();
+      }
+    }
+
+  }
+
+  /**
+   * {@link Client} shared by all the handles of a {@link SharedClientHolder}.
+   */
+  private static class SharedClient extends FilterClient {
+
+    private final SharedClientHolder holder;
+
+    private SharedClient(SharedClientHolder holder, Client client) {
+      super(client);
+      this.holder = holder;
+    }
+
+    /**
+     * Only closed by {@link ClientHandle}s.
+     */
+    @Override
+    public void close() {
+      holder.release();
+    }
+
+    private void closeDelegate() {
+      super.close();
+    }
+
+  }
+
+  /**
+   * {@link SharedClient} acquired by a single user. Releases it on the first close only, so that closing it twice
+   * doesn't close the client of the other users.
+   */
+  private static class ClientHandle extends FilterClient {
+
+    private final SharedClient sharedClient;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private ClientHandle(SharedClient sharedClient) {
+      super(sharedClient);
+      this.sharedClient = sharedClient;
+    }
+
+    @Override
+    public void close() {
+      if (!closed.compareAndSet(false, true)) {
+        log.debug("Shared ES transport client '{}' is already released", sharedClient.holder.key.getEsUri());
+        return;
+      }
+
+      sharedClient.close();
+    }
+
+  }
+
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.core;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.icgc.dcc.dcc.common.es.model.IndexDocument;
+import org.icgc.dcc.dcc.common.es.model.StreamingIndexDocument;
+
+/**
+ * {@link DocumentWriter} which acknowledges each written document.
+ * <p>
+ * The returned future is completed with the document's {@link BulkItemResponse} once the document is indexed, or
+ * failed with a non-retryable error or exhausted its retries and was sent to the dead letter sink (check
+ * {@link BulkItemResponse#isFailed()}). A failed document whose retry was superseded by a later write of the same
+ * document is completed with its failed response too. Documents spooled while the cluster is unavailable are
+ * acknowledged once replayed. Futures of documents still unacknowledged when the writer is closed, e.g. because the
+ * pending requests timed out or the spool could not be replayed, are completed exceptionally with an
+ * {@link ExhausedRetryException}.
+ * <p>
+ * <b>Futures are completed on a single acknowledgement thread of the writer</b>, in the order of the responses, rather
+ * than on the transport thread. Dependent stages which are not {@code async} run on that thread, so a blocking stage
+ * delays the acknowledgements of the following documents, though not the bulk requests themselves.
+ */
+public interface AsyncDocumentWriter extends DocumentWriter {
+
+  CompletableFuture<BulkItemResponse> writeAsync(IndexDocument document) throws IOException;
+
+  CompletableFuture<BulkItemResponse> writeAsync(StreamingIndexDocument document) throws IOException;
+
+}
@@ -21,9 +21,26 @@ import java.io.Closeable;
 import java.io.IOException;
 
 import org.icgc.dcc.dcc.common.es.model.IndexDocument;
+import org.icgc.dcc.dcc.common.es.model.StreamingIndexDocument;
 
 public interface DocumentWriter extends Closeable {
 
   void write(IndexDocument document) throws IOException;
 
+  /**
+   * Writes a document generating its source. Materializes the source by default, so implementations should override
+   * it to serialize the source directly.
+   */
+  default void write(StreamingIndexDocument document) throws IOException {
+    write(document.toIndexDocument());
+  }
+
+  /**
+   * @return indexing statistics of the writer. {@link EmptyDocumentWriterMetrics} if it doesn't collect any, which is
+   * the default
+   */
+  default DocumentWriterMetrics getMetrics() {
+    return EmptyDocumentWriterMetrics.INSTANCE;
+  }
+
 }
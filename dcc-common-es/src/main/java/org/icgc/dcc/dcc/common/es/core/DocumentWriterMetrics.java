@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.core;
+
+import javax.management.MXBean;
+
+/**
+ * Indexing throughput and latency statistics of a {@link DocumentWriter}. Rates are calculated since the writer was
+ * created. Exposed over JMX per writer and in aggregate for all the writers of the JVM.
+ */
+@MXBean
+public interface DocumentWriterMetrics {
+
+  /**
+   * Throughput.
+   */
+  long getDocumentCount();
+
+  long getByteCount();
+
+  double getDocumentsPerSecond();
+
+  double getBytesPerSecond();
+
+  /**
+   * Bytes of the documents which are buffered or being indexed. Bounded by the writers memory budget.
+   */
+  long getBufferedBytes();
+
+  /**
+   * Bulk requests.
+   */
+  long getBulkRequestCount();
+
+  int getInFlightRequestCount();
+
+  double getBulkLatencyMeanMillis();
+
+  long getBulkLatencyP50Millis();
+
+  long getBulkLatencyP95Millis();
+
+  long getBulkLatencyP99Millis();
+
+  long getBulkLatencyMaxMillis();
+
+  /**
+   * Serialization.
+   */
+  double getSerializationMeanMicros();
+
+  long getSerializationP99Micros();
+
+  long getSerializationMaxMicros();
+
+  /**
+   * Failures.
+   */
+  long getRetryCount();
+
+  long getRejectionCount();
+
+  long getDeadLetterCount();
+
+}
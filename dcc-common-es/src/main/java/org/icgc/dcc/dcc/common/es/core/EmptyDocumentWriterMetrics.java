@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.core;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import lombok.NoArgsConstructor;
+
+/**
+ * {@link DocumentWriterMetrics} of a writer which doesn't collect any. All the statistics are zero.
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class EmptyDocumentWriterMetrics implements DocumentWriterMetrics {
+
+  public static final DocumentWriterMetrics INSTANCE = new EmptyDocumentWriterMetrics();
+
+  @Override
+  public long getDocumentCount() {
+    return 0;
+  }
+
+  @Override
+  public long getByteCount() {
+    return 0;
+  }
+
+  @Override
+  public double getDocumentsPerSecond() {
+    return 0;
+  }
+
+  @Override
+  public double getBytesPerSecond() {
+    return 0;
+  }
+
+  @Override
+  public long getBufferedBytes() {
+    return 0;
+  }
+
+  @Override
+  public long getBulkRequestCount() {
+    return 0;
+  }
+
+  @Override
+  public int getInFlightRequestCount() {
+    return 0;
+  }
+
+  @Override
+  public double getBulkLatencyMeanMillis() {
+    return 0;
+  }
+
+  @Override
+  public long getBulkLatencyP50Millis() {
+    return 0;
+  }
+
+  @Override
+  public long getBulkLatencyP95Millis() {
+    return 0;
+  }
+
+  @Override
+  public long getBulkLatencyP99Millis() {
+    return 0;
+  }
+
+  @Override
+  public long getBulkLatencyMaxMillis() {
+    return 0;
+  }
+
+  @Override
+  public double getSerializationMeanMicros() {
+    return 0;
+  }
+
+  @Override
+  public long getSerializationP99Micros() {
+    return 0;
+  }
+
+  @Override
+  public long getSerializationMaxMicros() {
+    return 0;
+  }
+
+  @Override
+  public long getRetryCount() {
+    return 0;
+  }
+
+  @Override
+  public long getRejectionCount() {
+    return 0;
+  }
+
+  @Override
+  public long getDeadLetterCount() {
+    return 0;
+  }
+
+}
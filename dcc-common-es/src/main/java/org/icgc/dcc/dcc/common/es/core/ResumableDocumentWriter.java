@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.core;
+
+import java.io.IOException;
+import java.util.OptionalLong;
+
+import org.icgc.dcc.dcc.common.es.model.IndexDocument;
+import org.icgc.dcc.dcc.common.es.model.StreamingIndexDocument;
+
+/**
+ * {@link DocumentWriter} which periodically persists a checkpoint of the acknowledged input, so an interrupted load
+ * could be resumed.
+ * <p>
+ * Each document is written with the {@code offset} of the input it was produced from. Offsets are caller defined (e.g.
+ * line numbers or byte positions) and must not decrease. Documents written without an offset belong to the input of
+ * the last offset. The checkpoint is the highest offset whose documents, and the documents of all the preceding
+ * offsets, are acknowledged.
+ */
+public interface ResumableDocumentWriter extends DocumentWriter {
+
+  void write(IndexDocument document, long offset) throws IOException;
+
+  void write(StreamingIndexDocument document, long offset) throws IOException;
+
+  /**
+   * @return the checkpoint of the previous, interrupted, session. Input up to and including it is already indexed and
+   * should be skipped. Empty if there is nothing to resume.
+   */
+  OptionalLong getCheckpoint();
+
+}
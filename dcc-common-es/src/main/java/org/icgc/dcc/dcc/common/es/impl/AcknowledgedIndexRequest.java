@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.index.IndexRequest;
+
+import lombok.Getter;
+
+/**
+ * {@link IndexRequest} which carries the acknowledgement of its document. The request is referenced by the bulk
+ * request until it completes (and re-added as is on retries), so no other per-document state is needed.
+ */
+public class AcknowledgedIndexRequest extends IndexRequest {
+
+  @Getter
+  private final CompletableFuture<BulkItemResponse> acknowledgement = new CompletableFuture<>();
+
+  public AcknowledgedIndexRequest(String index) {
+    super(index);
+  }
+
+  public static void acknowledge(DocWriteRequest<?> request, BulkItemResponse response) {
+    if (request instanceof AcknowledgedIndexRequest) {
+      ((AcknowledgedIndexRequest) request).acknowledgement.complete(response);
+    }
+  }
+
+  public static void fail(List<? extends DocWriteRequest<?>> requests, Throwable failure) {
+    for (DocWriteRequest<?> request : requests) {
+      if (request instanceof AcknowledgedIndexRequest) {
+        ((AcknowledgedIndexRequest) request).acknowledgement.completeExceptionally(failure);
+      }
+    }
+  }
+
+}
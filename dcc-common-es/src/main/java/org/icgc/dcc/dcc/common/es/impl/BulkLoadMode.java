@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import lombok.NonNull;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tunes index settings for the initial load of a fresh index: disables refreshes and replicas and optionally relaxes
+ * translog durability. The original settings are restored when the load is finished, after which the index is
+ * optionally force-merged.
+ * <p>
+ * Reference counted per index name, as several writers (e.g. one per document type) may load the same index. The first
+ * writer to acquire the mode snapshots the original settings and its configuration applies, while the last one to
+ * release it restores them.
+ */
+@Slf4j
+public class BulkLoadMode {
+
+  /**
+   * Constants.
+   */
+  private static final String REFRESH_INTERVAL = "index.refresh_interval";
+  private static final String NUMBER_OF_REPLICAS = "index.number_of_replicas";
+  private static final String TRANSLOG_DURABILITY = "index.translog.durability";
+  private static final int WAIT_FOR_GREEN_TIMEOUT_MINUTES = 30;
+
+  /**
+   * Modes by index name. Guarded by itself.
+   */
+  private static final Map<String, BulkLoadMode> MODES = new HashMap<>();
+
+  /**
+   * Configuration.
+   */
+  private final String indexName;
+  // Of the writer which enabled the mode. Guarded by this.
+  private boolean asyncTranslog;
+  // Segments count to force-merge to. Skipped if null. Guarded by this.
+  private Integer maxSegments;
+
+  /**
+   * State.
+   */
+  // Number of writers using the mode. Guarded by this.
+  private int users;
+  // Original values of the changed settings. Empty values were not set explicitly and are reset to defaults. Guarded
+  // by this.
+  private Map<String, String> originalSettings;
+
+  private BulkLoadMode(String indexName) {
+    this.indexName = indexName;
+  }
+
+  /**
+   * Enables the bulk load mode of {@code indexName} unless already enabled by another writer. Each call must be
+   * followed by a {@link #release(Client)}.
+   */
+  public static BulkLoadMode acquire(@NonNull Client client, @NonNull String indexName, boolean asyncTranslog,
+      Integer maxSegments) {
+    BulkLoadMode mode;
+    synchronized (MODES) {
+      mode = MODES.computeIfAbsent(indexName, BulkLoadMode::new);
+    }
+
+    mode.acquire(client, asyncTranslog, maxSegments);
+
+    return mode;
+  }
+
+  /**
+   * Restores the original settings once the mode is not used by any writer. Uses the {@code client} of the releasing
+   * writer, as the clients of the others might be closed already.
+   */
+  public synchronized void release(@NonNull Client client) {
+    checkState(users > 0, "Bulk load mode of '%s' is not acquired", indexName);
+    if (--users > 0) {
+      log.info("[{}] Keeping bulk load mode enabled for {} more writers", indexName, users);
+      return;
+    }
+
+    disable(client);
+  }
+
+  private synchronized void acquire(Client client, boolean asyncTranslog, Integer maxSegments) {
+    if (users == 0) {
+      this.asyncTranslog = asyncTranslog;
+      this.maxSegments = maxSegments;
+      enable(client);
+    }
+
+    users++;
+  }
+
+  private void enable(Client client) {
+    val keys = ImmutableList.<String> builder().add(REFRESH_INTERVAL, NUMBER_OF_REPLICAS);
+    val settings = Settings.builder()
+        .put(REFRESH_INTERVAL, "-1")
+        .put(NUMBER_OF_REPLICAS, 0);
+    if (asyncTranslog) {
+      keys.add(TRANSLOG_DURABILITY);
+      settings.put(TRANSLOG_DURABILITY, "async");
+    }
+
+    val response = client.admin().indices().prepareGetSettings(indexName).get();
+    val original = ImmutableMap.<String, String> builder();
+    for (val key : keys.build()) {
+      val value = response.getSetting(indexName, key);
+      original.put(key, value == null ? "" : value);
+    }
+
+    originalSettings = original.build();
+    log.info("[{}] Enabling bulk load mode. Original settings: {}", indexName, originalSettings);
+    updateSettings(client, settings.build());
+  }
+
+  private void disable(Client client) {
+    val settings = Settings.builder();
+    for (val entry : originalSettings.entrySet()) {
+      if (entry.getValue().isEmpty()) {
+        settings.putNull(entry.getKey());
+      } else {
+        settings.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    log.info("[{}] Disabling bulk load mode. Restoring settings: {}", indexName, originalSettings);
+    updateSettings(client, settings.build());
+    client.admin().indices().prepareRefresh(indexName).get();
+
+    if (maxSegments != null) {
+      log.info("[{}] Force merging to {} segments...", indexName, maxSegments);
+      client.admin().indices().prepareForceMerge(indexName).setMaxNumSegments(maxSegments).get();
+    }
+
+    log.info("[{}] Waiting for the index to become GREEN...", indexName);
+    val health = client.admin().cluster().prepareHealth(indexName)
+        .setWaitForGreenStatus()
+        .setTimeout(TimeValue.timeValueMinutes(WAIT_FOR_GREEN_TIMEOUT_MINUTES))
+        .get();
+    if (health.isTimedOut()) {
+      log.warn("[{}] Index is not GREEN after {} mins: {}", indexName, WAIT_FOR_GREEN_TIMEOUT_MINUTES,
+          health.getStatus());
+    }
+  }
+
+  private void updateSettings(Client client, Settings settings) {
+    client.admin().indices().prepareUpdateSettings(indexName).setSettings(settings).get();
+  }
+
+}
@@ -17,20 +17,38 @@
  */
 package org.icgc.dcc.dcc.common.es.impl;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.icgc.dcc.common.core.util.Formats.formatBytes;
 import static org.icgc.dcc.common.core.util.Formats.formatCount;
+import static org.icgc.dcc.dcc.common.es.impl.MemoryBudget.sizeOf;
+import static org.icgc.dcc.dcc.common.es.impl.RetryPolicy.getDelayMillis;
+import static org.icgc.dcc.dcc.common.es.impl.RetryPolicy.getFailureType;
+import static org.icgc.dcc.dcc.common.es.impl.RetryPolicy.FailureType.NON_RETRYABLE;
+import static org.icgc.dcc.dcc.common.es.impl.RetryPolicy.FailureType.REJECTED;
+import static org.icgc.dcc.dcc.common.es.impl.RetryPolicy.FailureType.TRANSIENT;
 
-import org.elasticsearch.action.ActionRequest;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse.Failure;
 import org.elasticsearch.action.bulk.BulkProcessor;
 import org.elasticsearch.action.bulk.BulkProcessor.Listener;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
+import org.icgc.dcc.dcc.common.es.core.DeadLetterSink;
+import org.icgc.dcc.dcc.common.es.impl.MemoryBudget.Account;
+import org.icgc.dcc.dcc.common.es.impl.RetryPolicy.FailureType;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import lombok.Value;
 import lombok.val;
 import lombok.extern.slf4j.Slf4j;
 
@@ -44,6 +62,28 @@ public class BulkProcessorListener implements Listener {
   private final IndexingState indexingState;
   @NonNull
   private final String writerId;
+  @NonNull
+  private final BulkSizeController bulkSizeController;
+  /**
+   * Executes re-indexing of failed requests after a backoff delay. {@code afterBulk} might be invoked on a transport
+   * thread while the producer holds the processor's lock waiting for an in-flight slot, so failed requests must not be
+   * added back from there.
+   */
+  @NonNull
+  private final ScheduledExecutorService retryExecutor;
+  @NonNull
+  private final DeadLetterSink deadLetterSink;
+  @NonNull
+  private final IndexingMetrics metrics;
+  /**
+   * Released once a request is indexed or finally failed.
+   */
+  @NonNull
+  private final Account memoryAccount;
+  /**
+   * Retries superseded by later writes of the same documents are dropped. Null if retries are disabled.
+   */
+  private final LatestWrites latestWrites;
 
   @Setter
   private BulkProcessor processor;
@@ -52,55 +92,188 @@ public class BulkProcessorListener implements Listener {
   public void beforeBulk(long executionId, BulkRequest request) {
     clusterStateVerifier.ensureClusterState();
     log.debug("Indexing state before load. {}", indexingState);
-    indexingState.startIndexing();
+    indexingState.startIndexing(executionId);
+    bulkSizeController.resetPendingBytes();
+    metrics.startBulk(executionId);
     printRequestStats(executionId, request);
   }
 
   @Override
   public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
     log.debug("[{}] Received response for request {}", writerId, executionId);
-    log.debug("Indexing state after load. {}", indexingState);
+    metrics.finishBulk(executionId);
 
-    // Unsuccessful bulk response. Re-index only failed requests.
-    if (response.hasFailures()) {
-      log.warn("[{}] Encountered exceptions during bulk load: {}", writerId,
-          getExceptionMessage(response.buildFailureMessage()));
-      indexingState.enableCheckClusterState();
-      reindexFailedRequests(processor, request, response);
+    try {
+      // Unsuccessful bulk response. Re-index only failed requests.
+      if (response.hasFailures()) {
+        log.warn("[{}] Encountered exceptions during bulk load: {}", writerId,
+            getExceptionMessage(response.buildFailureMessage()));
+        indexingState.enableCheckClusterState();
+        val rejected = reindexFailedRequests(executionId, request, response);
+        if (rejected) {
+          bulkSizeController.reject();
+        } else {
+          bulkSizeController.update(response.getTook());
+        }
+      } else {
+        log.info("[{}] Successfully loaded bulk request '{}' in {}.", writerId, executionId, response.getTook());
+        acknowledgeAll(request, response);
+        indexingState.resetIndexState();
+        bulkSizeController.update(response.getTook());
+      }
+    } finally {
+      // Only after the retries are registered, so the writer doesn't observe a moment without pending requests
+      indexingState.finishIndexing(executionId);
     }
 
-    // Successful bulk response
-    log.info("[{}] Successfully loaded bulk request '{}'.", writerId, executionId);
-    indexingState.resetIndexState();
     log.debug("Indexing state after load. {}", indexingState);
   }
 
   @Override
   public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
     log.debug("[{}] Received unsuccessful response for request {}", writerId, executionId);
+    metrics.finishBulk(executionId);
     indexingState.enableCheckClusterState();
     log.debug("{}", indexingState);
 
     log.warn("[{}] Encountered exception during bulk load: {}", writerId, getExceptionMessage(failure));
-    retryRequest(executionId, request);
+    val failureType = getFailureType(failure);
+    if (failureType == REJECTED) {
+      metrics.recordRejections(request.numberOfActions());
+      bulkSizeController.reject();
+    } else {
+      bulkSizeController.fail();
+    }
+
+    try {
+      val requests = request.requests();
+      val failedRequests = ImmutableList.<FailedRequest> builder();
+      for (int i = 0; i < requests.size(); i++) {
+        failedRequests.add(new FailedRequest(requests.get(i), createFailedResponse(i, requests.get(i), failure)));
+      }
+
+      retryRequest(executionId, failedRequests.build(), failureType);
+    } finally {
+      indexingState.finishIndexing(executionId);
+    }
+
     log.debug("{}", indexingState);
   }
 
-  private void retryRequest(long executionId, BulkRequest request) {
+  /**
+   * Re-indexes {@code requests} after a backoff delay. Once the retries are exhausted they are sent to the
+   * {@code deadLetterSink} instead, as nothing could handle an exception thrown on the transport thread.
+   */
+  private void retryRequest(long executionId, List<FailedRequest> requests, FailureType failureType) {
     log.debug("[{}] Retrying request {}", writerId, executionId);
-    indexingState.checkRetryFailed();
+    if (!indexingState.canRetryIndexing()) {
+      log.error("[{}] Exhausted retries of {} failed index requests of request '{}'. Sending them to the dead letter "
+          + "sink...", writerId, requests.size(), executionId);
+      for (val request : requests) {
+        deadLetter(request.getRequest(), request.getResponse());
+      }
+
+      return;
+    }
 
-    log.info("[{}] Retrying failed index request '{}'", writerId, executionId);
     indexingState.incrementTotalRetries();
     indexingState.incrementRetries();
-    reindexBulkRequest(processor, request);
+    metrics.recordRetries(requests.size());
+    val delayMillis = getDelayMillis(failureType, indexingState.getRetries());
+    log.info("[{}] Retrying {} failed index requests of request '{}' in {} ms ({})", writerId, requests.size(),
+        executionId, delayMillis, failureType);
+    reindex(executionId, requests, delayMillis);
   }
 
-  private static void reindexBulkRequest(BulkProcessor processor, BulkRequest bulkRequest) {
-    for (val request : bulkRequest.requests()) {
-      processor.add(request);
+  /**
+   * Re-indexes only retryable failed requests. The rest are sent to the {@code deadLetterSink}.
+   * 
+   * @return {@code true} if any of the requests was rejected
+   */
+  private boolean reindexFailedRequests(long executionId, BulkRequest bulkRequest, BulkResponse bulkResponse) {
+    log.debug("[{}] Re-indexing failed requests", writerId);
+
+    val requests = bulkRequest.requests();
+    val failedRequests = ImmutableList.<FailedRequest> builder();
+    FailureType failureType = TRANSIENT;
+    for (val response : bulkResponse) {
+      val request = requests.get(response.getItemId());
+      if (!response.isFailed()) {
+        acknowledge(request, response);
+      } else {
+        val failure = response.getFailure();
+        val itemFailureType = getFailureType(failure);
+        if (itemFailureType == NON_RETRYABLE) {
+          deadLetter(request, response);
+        } else {
+          failedRequests.add(new FailedRequest(request, response));
+          if (itemFailureType == REJECTED) {
+            metrics.recordRejections(1);
+            failureType = REJECTED;
+          }
+        }
+      }
+    }
+
+    val retryableRequests = failedRequests.build();
+    if (!retryableRequests.isEmpty()) {
+      retryRequest(executionId, retryableRequests, failureType);
+    }
+
+    return failureType == REJECTED;
+  }
+
+  /**
+   * Adds {@code requests} back to the processor after {@code delayMillis}, except those superseded by a later write of
+   * the same document in the meantime. Tracked as pending so that the writer is not closed before they are
+   * re-submitted.
+   */
+  private void reindex(long executionId, List<FailedRequest> requests, long delayMillis) {
+    indexingState.startRetry();
+    retryExecutor.schedule(() -> {
+      try {
+        log.debug("[{}] Re-adding {} requests of request '{}'...", writerId, requests.size(), executionId);
+        for (val failedRequest : requests) {
+          val request = failedRequest.getRequest();
+          if (latestWrites.isSuperseded(request)) {
+            log.debug("[{}] Dropping retry of '{}' superseded by a later write", writerId, request.id());
+            acknowledge(request, failedRequest.getResponse());
+            continue;
+          }
+
+          bulkSizeController.addPendingBytes(sizeOf(request));
+          processor.add(request);
+        }
+
+        log.debug("[{}] Flushing failed requests...", writerId);
+        processor.flush();
+        log.debug("[{}] Finished failed requests re-indexing...", writerId);
+      } finally {
+        indexingState.finishRetry();
+      }
+    }, delayMillis, MILLISECONDS);
+  }
+
+  private void acknowledge(DocWriteRequest<?> request, BulkItemResponse response) {
+    if (latestWrites != null) {
+      latestWrites.complete(request);
+    }
+
+    AcknowledgedIndexRequest.acknowledge(request, response);
+    memoryAccount.release(sizeOf(request));
+  }
+
+  private void deadLetter(DocWriteRequest<?> request, BulkItemResponse response) {
+    metrics.recordDeadLetter();
+    deadLetterSink.accept(request, response.getFailure());
+    acknowledge(request, response);
+  }
+
+  private void acknowledgeAll(BulkRequest bulkRequest, BulkResponse bulkResponse) {
+    val requests = bulkRequest.requests();
+    for (val response : bulkResponse) {
+      acknowledge(requests.get(response.getItemId()), response);
     }
-    processor.flush();
   }
 
   private void printRequestStats(long executionId, BulkRequest request) {
@@ -110,6 +283,13 @@ public class BulkProcessorListener implements Listener {
         formatBytes(bytes));
   }
 
+  private static BulkItemResponse createFailedResponse(int itemId, DocWriteRequest<?> request, Throwable failure) {
+    val cause = failure instanceof Exception ? (Exception) failure : new ElasticsearchException(failure);
+
+    return new BulkItemResponse(itemId, request.opType(),
+        new Failure(request.index(), request.type(), request.id(), cause));
+  }
+
   private static String getExceptionMessage(Throwable failure) {
     val message = Throwables.getStackTraceAsString(failure);
 
@@ -122,23 +302,12 @@ public class BulkProcessorListener implements Listener {
     return message.length() > maxChars ? message.substring(0, maxChars) : message;
   }
 
-  private void reindexFailedRequests(BulkProcessor processor, BulkRequest bulkRequest, BulkResponse bulkResponse) {
-    log.debug("[{}] Re-indexing failed requests", writerId);
-
-    val requests = bulkRequest.requests();
-    val iterator = bulkResponse.iterator();
+  @Value
+  private static class FailedRequest {
 
-    while (iterator.hasNext()) {
-      val response = iterator.next();
-      if (response.isFailed()) {
-        val failedRequest = requests.get(response.getItemId());
-        processor.add(failedRequest);
-      }
-    }
+    DocWriteRequest<?> request;
+    BulkItemResponse response;
 
-    log.debug("[{}] Flushing failed requests...", writerId);
-    processor.flush();
-    log.debug("[{}] Finished failed requests re-indexing...", writerId);
   }
 
 }
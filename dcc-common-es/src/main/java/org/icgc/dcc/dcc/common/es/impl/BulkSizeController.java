@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static org.elasticsearch.common.unit.ByteSizeUnit.MB;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Controls the size of bulk requests. When {@code adaptive} the size is shrunk if bulk requests take longer than
+ * {@code targetLatency} or fail, halved if the cluster rejects them and grown back up to {@code maxBulkSize} while
+ * they are faster than the target.
+ */
+@Slf4j
+public class BulkSizeController {
+
+  /**
+   * Constants.
+   */
+  private static final long MIN_BULK_SIZE_BYTES = new ByteSizeValue(1, MB).getBytes();
+  private static final double GROW_FACTOR = 1.25;
+  private static final double SHRINK_FACTOR = 0.75;
+  private static final double REJECTION_FACTOR = 0.5;
+
+  /**
+   * Configuration.
+   */
+  private final long maxBulkSizeBytes;
+  @Getter
+  private final boolean adaptive;
+  private final long targetLatencyMillis;
+
+  /**
+   * State.
+   */
+  private final AtomicLong bulkSizeBytes;
+  // Bytes added to the processor since it sent its last bulk request, whatever triggered the request.
+  private final AtomicLong pendingBytes = new AtomicLong();
+
+  public BulkSizeController(@NonNull ByteSizeValue maxBulkSize, boolean adaptive, @NonNull TimeValue targetLatency) {
+    this.maxBulkSizeBytes = maxBulkSize.getBytes();
+    this.adaptive = adaptive;
+    this.targetLatencyMillis = targetLatency.millis();
+    this.bulkSizeBytes = new AtomicLong(maxBulkSizeBytes);
+  }
+
+  public long getBulkSizeBytes() {
+    return bulkSizeBytes.get();
+  }
+
+  /**
+   * Records {@code bytes} added to the processor. Must be called before adding them, so the bytes are reset with the
+   * bulk request they are sent with.
+   */
+  public void addPendingBytes(long bytes) {
+    pendingBytes.addAndGet(bytes);
+  }
+
+  /**
+   * Records that the processor sent all the documents added to it in a bulk request.
+   */
+  public void resetPendingBytes() {
+    pendingBytes.set(0);
+  }
+
+  /**
+   * @return {@code true} if adding {@code bytes} exceeds the adjusted bulk size. The processor flushes on the
+   * configured maximum bulk size only, so smaller adjusted sizes are enforced by the writer.
+   */
+  public boolean isBulkFull(long bytes) {
+    return adaptive && pendingBytes.get() + bytes > bulkSizeBytes.get();
+  }
+
+  /**
+   * Adjusts the bulk size according to the time {@code took} by a bulk request, including one with failed items.
+   */
+  public void update(@NonNull TimeValue took) {
+    if (!adaptive) {
+      return;
+    }
+
+    long tookMillis = took.millis();
+    if (tookMillis > targetLatencyMillis) {
+      resize(SHRINK_FACTOR, "took " + tookMillis + " ms (target " + targetLatencyMillis + " ms)");
+    } else if (tookMillis < targetLatencyMillis / 2) {
+      resize(GROW_FACTOR, "took " + tookMillis + " ms (target " + targetLatencyMillis + " ms)");
+    }
+  }
+
+  /**
+   * Halves the bulk size after the cluster rejected a bulk request or some of its items, as its queues are full.
+   */
+  public void reject() {
+    if (adaptive) {
+      resize(REJECTION_FACTOR, "was rejected");
+    }
+  }
+
+  /**
+   * Shrinks the bulk size after a bulk request failed as a whole, e.g. timed out.
+   */
+  public void fail() {
+    if (adaptive) {
+      resize(SHRINK_FACTOR, "failed");
+    }
+  }
+
+  private void resize(double factor, String reason) {
+    long current = bulkSizeBytes.get();
+    long next = Math.max(MIN_BULK_SIZE_BYTES, Math.min(maxBulkSizeBytes, Math.round(current * factor)));
+    if (next != current && bulkSizeBytes.compareAndSet(current, next)) {
+      log.debug("Bulk request {}. Changed bulk size from {} to {} bytes", reason, current, next);
+    }
+  }
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.OptionalLong;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.icgc.dcc.dcc.common.es.core.AsyncDocumentWriter;
+import org.icgc.dcc.dcc.common.es.core.DocumentWriterMetrics;
+import org.icgc.dcc.dcc.common.es.core.ResumableDocumentWriter;
+import org.icgc.dcc.dcc.common.es.model.IndexDocument;
+import org.icgc.dcc.dcc.common.es.model.StreamingIndexDocument;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link ResumableDocumentWriter} which tracks the acknowledgements of an {@link AsyncDocumentWriter} and persists the
+ * checkpoint to a local file every {@code checkpointIntervalSeconds} and on close. The file is deleted once the
+ * session is closed successfully.
+ * <p>
+ * Once a document fails, including when it's sent to the dead letter sink, the checkpoint can't advance past it anymore
+ * in this session. Later documents are no longer tracked and the checkpoint is frozen once it reaches the failed
+ * document, so the next session resumes from there.
+ */
+@Slf4j
+public class CheckpointingDocumentWriter implements ResumableDocumentWriter {
+
+  /**
+   * Constants.
+   */
+  private static final long NO_OFFSET = -1;
+  private static final int CLOSE_TIMEOUT_MINUTES = 1;
+
+  /**
+   * Dependencies.
+   */
+  private final AsyncDocumentWriter delegate;
+  private final ScheduledExecutorService checkpointer;
+
+  /**
+   * Configuration.
+   */
+  private final Path checkpointFile;
+  private final OptionalLong previousCheckpoint;
+
+  /**
+   * State.
+   */
+  // Unacknowledged documents in the write order. Polled by the checkpointer only.
+  private final Queue<Write> pendingWrites = new ConcurrentLinkedQueue<>();
+  private volatile long lastOffset = NO_OFFSET;
+  // Set once any document failed. Later documents are not tracked
+  private volatile boolean failed;
+  // Set once the failed document reached the head of the write order. Accessed by the checkpointer only
+  private boolean frozen;
+  // Accessed by the checkpointer only
+  private long checkpoint = NO_OFFSET;
+  private long savedCheckpoint = NO_OFFSET;
+
+  @SneakyThrows
+  public CheckpointingDocumentWriter(@NonNull AsyncDocumentWriter delegate, @NonNull Path checkpointFile,
+      int checkpointIntervalSeconds) {
+    checkArgument(checkpointIntervalSeconds > 0, "Checkpoint interval must be positive: %s",
+        checkpointIntervalSeconds);
+    this.delegate = delegate;
+    this.checkpointFile = checkpointFile;
+    this.previousCheckpoint = readCheckpoint(checkpointFile);
+    if (previousCheckpoint.isPresent()) {
+      log.info("Resuming session after checkpoint {} of '{}'", previousCheckpoint.getAsLong(), checkpointFile);
+      // Keeps the previous checkpoint until the new session acknowledges something
+      this.checkpoint = previousCheckpoint.getAsLong();
+      this.savedCheckpoint = checkpoint;
+    }
+
+    this.checkpointer = newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("es-writer-checkpoint-%d")
+        .setDaemon(true)
+        .build());
+    checkpointer.scheduleWithFixedDelay(() -> checkpoint(false), checkpointIntervalSeconds, checkpointIntervalSeconds,
+        SECONDS);
+  }
+
+  @Override
+  public OptionalLong getCheckpoint() {
+    return previousCheckpoint;
+  }
+
+  @Override
+  public void write(@NonNull IndexDocument document, long offset) throws IOException {
+    advance(offset);
+    write(document);
+  }
+
+  @Override
+  public void write(@NonNull StreamingIndexDocument document, long offset) throws IOException {
+    advance(offset);
+    write(document);
+  }
+
+  @Override
+  public void write(@NonNull IndexDocument document) throws IOException {
+    track(delegate.writeAsync(document));
+  }
+
+  @Override
+  public void write(@NonNull StreamingIndexDocument document) throws IOException {
+    track(delegate.writeAsync(document));
+  }
+
+  @Override
+  public DocumentWriterMetrics getMetrics() {
+    return delegate.getMetrics();
+  }
+
+  @Override
+  @SneakyThrows
+  public void close() throws IOException {
+    checkpointer.shutdown();
+    checkpointer.awaitTermination(CLOSE_TIMEOUT_MINUTES, MINUTES);
+
+    try {
+      delegate.close();
+    } finally {
+      checkpoint(true);
+    }
+
+    if (!failed && pendingWrites.isEmpty()) {
+      log.info("Session is finished. Deleting checkpoint '{}'", checkpointFile);
+      Files.deleteIfExists(checkpointFile);
+    }
+  }
+
+  private void track(CompletableFuture<BulkItemResponse> acknowledgement) {
+    if (failed) {
+      return;
+    }
+
+    pendingWrites.add(new Write(lastOffset, acknowledgement));
+    acknowledgement.whenComplete((response, throwable) -> {
+      if (throwable != null || isFailed(response)) {
+        failed = true;
+      }
+    });
+  }
+
+  private void advance(long offset) {
+    checkArgument(offset >= lastOffset, "Offsets must not decrease: %s < %s", offset, lastOffset);
+    lastOffset = offset;
+  }
+
+  /**
+   * Advances the checkpoint over the acknowledged documents at the head of the write order and saves it if changed.
+   * A failed document freezes the checkpoint, so it is written again by the next session.
+   * 
+   * @param finished whether all the documents are written, so the last offset is complete
+   */
+  private synchronized void checkpoint(boolean finished) {
+    Write write;
+    while (!frozen && (write = pendingWrites.peek()) != null && isAcknowledged(write)) {
+      pendingWrites.poll();
+
+      // Other documents of the offset might still be pending or not written yet
+      val next = pendingWrites.peek();
+      val complete = next == null ? finished || write.getOffset() < lastOffset : next.getOffset() != write.getOffset();
+      if (complete) {
+        checkpoint = Math.max(checkpoint, write.getOffset());
+      }
+    }
+
+    if (!frozen && isFailed(pendingWrites.peek())) {
+      log.error("Document of offset {} failed. Freezing checkpoint {} for the rest of the session",
+          pendingWrites.peek().getOffset(), checkpoint);
+      frozen = true;
+    }
+
+    if (frozen) {
+      // Releases the writes tracked before the failure or concurrently with it
+      pendingWrites.clear();
+    }
+
+    if (checkpoint != savedCheckpoint) {
+      try {
+        saveCheckpoint(checkpoint);
+        savedCheckpoint = checkpoint;
+      } catch (IOException e) {
+        log.error("Failed to save checkpoint {} to '{}': ", checkpoint, checkpointFile, e);
+      }
+    }
+  }
+
+  private void saveCheckpoint(long checkpoint) throws IOException {
+    val tempFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+    Files.write(tempFile, String.valueOf(checkpoint).getBytes(UTF_8));
+    Files.move(tempFile, checkpointFile, REPLACE_EXISTING, ATOMIC_MOVE);
+    log.debug("Saved checkpoint {} to '{}'", checkpoint, checkpointFile);
+  }
+
+  private static OptionalLong readCheckpoint(Path checkpointFile) throws IOException {
+    if (!Files.exists(checkpointFile)) {
+      return OptionalLong.empty();
+    }
+
+    val content = new String(Files.readAllBytes(checkpointFile), UTF_8).trim();
+
+    return OptionalLong.of(Long.parseLong(content));
+  }
+
+  private static boolean isAcknowledged(Write write) {
+    val acknowledgement = write.getAcknowledgement();
+
+    return acknowledgement.isDone() && !acknowledgement.isCompletedExceptionally()
+        && !isFailed(acknowledgement.join());
+  }
+
+  private static boolean isFailed(Write write) {
+    if (write == null) {
+      return false;
+    }
+
+    val acknowledgement = write.getAcknowledgement();
+
+    return acknowledgement.isCompletedExceptionally()
+        || (acknowledgement.isDone() && isFailed(acknowledgement.join()));
+  }
+
+  /**
+   * Dead-lettered documents are acknowledged with their failed response.
+   */
+  private static boolean isFailed(BulkItemResponse response) {
+    return response != null && response.isFailed();
+  }
+
+  @Value
+  private static class Write {
+
+    long offset;
+    CompletableFuture<BulkItemResponse> acknowledgement;
+
+  }
+
+}
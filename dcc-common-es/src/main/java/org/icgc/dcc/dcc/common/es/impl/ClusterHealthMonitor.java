@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.elasticsearch.cluster.health.ClusterHealthStatus.GREEN;
+import static org.elasticsearch.cluster.health.ClusterHealthStatus.RED;
+import static org.icgc.dcc.dcc.common.es.TransportClientFactory.getSharedClient;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.icgc.dcc.dcc.common.es.core.ExhausedRetryException;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls the health status of an index in background and caches it. A single instance is shared by all the writers of
+ * the index using the same {@link Client}, or handles of the same shared client, so writers never request the health
+ * themselves. Other indices of the cluster don't affect the status.
+ * <p>
+ * A missing index is reported as RED by the cluster, but considered available, since it is created by the first
+ * write.
+ */
+@Slf4j
+public class ClusterHealthMonitor {
+
+  /**
+   * Constants.
+   */
+  private static final int POLL_INTERVAL_SECONDS = 5;
+  private static final int GET_HEALTH_STATUS_TIMEOUT_SECONDS = 20;
+  private static final int MAX_FAILED_RETRIES = 10;
+
+  /**
+   * Monitors by client and index. Guarded by itself.
+   */
+  private static final Map<Key, ClusterHealthMonitor> MONITORS = new HashMap<>();
+
+  /**
+   * Dependencies.
+   */
+  private final Key key;
+  private final ScheduledExecutorService executor;
+
+  /**
+   * State.
+   */
+  // Number of writers using the monitor. Guarded by MONITORS.
+  private int users;
+  // Last known status. Null if unknown. Guarded by this.
+  private ClusterHealthStatus status;
+  // Consequent failed status requests. Guarded by this.
+  private int failedRetries;
+  // Whether the index didn't exist when RED. Guarded by this.
+  private boolean indexMissing;
+
+  /**
+   * Returns the monitor of {@code indexName} for the {@code client} creating one if needed. Each call must be followed
+   * by a {@link #release()}.
+   */
+  public static ClusterHealthMonitor acquire(@NonNull Client client, @NonNull String indexName) {
+    synchronized (MONITORS) {
+      val monitor = MONITORS.computeIfAbsent(new Key(getSharedClient(client), indexName), ClusterHealthMonitor::new);
+      monitor.users++;
+
+      return monitor;
+    }
+  }
+
+  private ClusterHealthMonitor(Key key) {
+    this.key = key;
+    this.executor = newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("es-cluster-health-monitor-%d")
+        .setDaemon(true)
+        .build());
+    executor.scheduleWithFixedDelay(this::poll, 0, POLL_INTERVAL_SECONDS, SECONDS);
+  }
+
+  /**
+   * Stops the monitor once it's not used by any writer.
+   */
+  public void release() {
+    synchronized (MONITORS) {
+      if (--users == 0) {
+        MONITORS.remove(key);
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  public synchronized ClusterHealthStatus getStatus() {
+    return status;
+  }
+
+  /**
+   * @return {@code true} if the existing index is RED or its status could not be fetched
+   */
+  public synchronized boolean isUnavailable() {
+    return (status == RED && !indexMissing) || failedRetries > 0;
+  }
+
+  /**
+   * Blocks until the index is GREEN or missing. Keeps waiting while the index is RED or YELLOW as it will recover at
+   * some point and we don't want to stop long running indexing.
+   * 
+   * @throws ExhausedRetryException if the status could not be fetched in {@code MAX_FAILED_RETRIES} attempts
+   */
+  @SneakyThrows
+  public synchronized void awaitGreen(@NonNull String id) {
+    if (status != GREEN) {
+      log.warn("[{}] Index '{}' is '{}'. Waiting for it to become GREEN...", id, key.getIndexName(), status);
+    }
+
+    while (status != GREEN && !indexMissing) {
+      if (failedRetries >= MAX_FAILED_RETRIES) {
+        log.warn("[{}] Failed to check cluster health in '{}' attempts. Exiting...", id, MAX_FAILED_RETRIES);
+        throw new ExhausedRetryException();
+      }
+
+      wait();
+    }
+
+    log.debug("[{}] Index '{}' is GREEN", id, key.getIndexName());
+  }
+
+  private void poll() {
+    try {
+      val healthStatus = key.getClient().admin().cluster().prepareHealth(key.getIndexName()).execute()
+          .actionGet(GET_HEALTH_STATUS_TIMEOUT_SECONDS, SECONDS).getStatus();
+      val missing = healthStatus == RED && !isIndexExists();
+      update(healthStatus, missing);
+    } catch (Exception e) {
+      fail(e);
+    }
+  }
+
+  private boolean isIndexExists() {
+    return key.getClient().admin().indices().prepareExists(key.getIndexName()).execute()
+        .actionGet(GET_HEALTH_STATUS_TIMEOUT_SECONDS, SECONDS).isExists();
+  }
+
+  private synchronized void update(ClusterHealthStatus healthStatus, boolean missing) {
+    if (healthStatus != status) {
+      log.info("Health of index '{}' changed from '{}' to '{}'", key.getIndexName(), status, healthStatus);
+    }
+    if (missing && !indexMissing) {
+      log.info("Index '{}' doesn't exist yet. It will be created by the first write.", key.getIndexName());
+    }
+
+    status = healthStatus;
+    indexMissing = missing;
+    failedRetries = 0;
+    notifyAll();
+  }
+
+  private synchronized void fail(Exception e) {
+    failedRetries++;
+    log.warn("[{}/{}] Failed to check health of index '{}': {}", failedRetries, MAX_FAILED_RETRIES,
+        key.getIndexName(), e.getMessage());
+
+    status = null;
+    notifyAll();
+  }
+
+  /**
+   * Clients are compared by identity.
+   */
+  @Value
+  private static class Key {
+
+    Client client;
+    String indexName;
+
+  }
+
+}
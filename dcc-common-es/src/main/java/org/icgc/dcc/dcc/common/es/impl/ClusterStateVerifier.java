@@ -17,21 +17,12 @@
  */
 package org.icgc.dcc.dcc.common.es.impl;
 
-import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Throwables.propagate;
-import static java.util.concurrent.TimeUnit.SECONDS;
-import static org.elasticsearch.cluster.health.ClusterHealthStatus.GREEN;
 
-import java.util.concurrent.TimeUnit;
-
-import org.elasticsearch.ElasticsearchException;
-import org.elasticsearch.client.Client;
-import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.icgc.dcc.dcc.common.es.core.ExhausedRetryException;
 
+import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
-import lombok.val;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -39,17 +30,13 @@ import lombok.extern.slf4j.Slf4j;
 public class ClusterStateVerifier {
 
   /**
-   * Constants.
+   * Shared by all writers of the same client and index. Never issues health requests on the indexing thread.
    */
-  private static final int GET_HEALTH_STATUS_TIMEOUT_SECONDS = 20;
-  private static final float TIMEOUT_MUTLIPLIPER = 1.3f;
-  private static final int DEFAULT_SLEEP_TIMEOUT_SECONDS = 5;
-  private static final int MAX_FAILED_RETRIES = 10;
-  private static final int MAX_SLEEP_TIMEOUT_SECONDS = 600; // 10 mins
-
-  private final Client client;
-  private final String indexName;
+  @NonNull
+  private final ClusterHealthMonitor healthMonitor;
+  @NonNull
   private final String id;
+  @NonNull
   private final IndexingState indexingState;
 
   public void ensureClusterState() {
@@ -70,81 +57,13 @@ public class ClusterStateVerifier {
   }
 
   /**
-   * Checks for the cluster's health. Blocks until the cluster is GREEN, but no more than
-   * {@code MAX_SLEEP_TIMEOUT_SECONDS}.
+   * Checks for the cluster's health. Blocks while the cached cluster status is not GREEN.
    * 
    * @throws ExhausedRetryException
    */
   private void checkClusterState() {
-    boolean isClusterGreen = false;
-    int timeoutSecs = DEFAULT_SLEEP_TIMEOUT_SECONDS;
-
-    // At some point of time the cluster will recover and we don't want to stop long running indexing.
-    while (!isClusterGreen) {
-      log.info("[{}] Checking for cluster state before loading.", id);
-      val healthStatus = getHealthStatus();
-      if (healthStatus == GREEN) {
-        log.debug("[{}] Cluster is GREEN", id);
-        isClusterGreen = true;
-      } else {
-        log.warn("[{}] Cluster is '{}'. Sleeping for {} seconds...", id, healthStatus, timeoutSecs);
-        timeoutSecs = sleep(timeoutSecs);
-      }
-    }
-  }
-
-  /**
-   * Get's the cluster's health status.<br>
-   * Tries to get the cluster health status in {@code GET_HEALTH_STATUS_TIMEOUT_SECONDS} seconds. If the request fails
-   * retries, but no more than {@code MAX_FAILED_RETRIES}. Max time interval between retries is
-   * {@code MAX_SLEEP_TIMEOUT_SECONDS}.
-   * 
-   * @throws ExhausedRetryException
-   */
-  private ClusterHealthStatus getHealthStatus() {
-    ClusterHealthStatus healthStatus = null;
-    int availableRetries = MAX_FAILED_RETRIES;
-    int timeoutSecs = DEFAULT_SLEEP_TIMEOUT_SECONDS;
-
-    while (availableRetries-- > 0) {
-      log.debug("[{}] Checking custer health status. Retries left: {}", id, availableRetries);
-      try {
-        healthStatus = getClusterHealthStatus();
-        log.debug("[{}] Cluster health object: {}", id, healthStatus);
-      } catch (ElasticsearchException e) {
-        val retryCount = MAX_FAILED_RETRIES - availableRetries;
-        log.warn("[{}][{}/{}] Failed to check cluster health. Retrying because of exception: {}", id, retryCount,
-            MAX_FAILED_RETRIES, e);
-        log.info("[{}] Sleeping for {} seconds...", id, timeoutSecs);
-        timeoutSecs = sleep(timeoutSecs);
-      }
-    }
-
-    // No more retries and no health status
-    if (healthStatus == null) {
-      log.warn("Failed to check cluster health in '{}' attempts. Exiting...", MAX_FAILED_RETRIES);
-      throw new ExhausedRetryException();
-    }
-
-    checkState(availableRetries != 0, "Cluster healthcheck should failed but instead it's equals to %s", healthStatus);
-
-    return healthStatus;
-  }
-
-  /**
-   * Sleeps for {@code timeoutSeconds} and return next sleep timeout.
-   */
-  @SneakyThrows
-  private static int sleep(int timeoutSeconds) {
-    SECONDS.sleep(timeoutSeconds);
-    val nextTimeout = Math.round(timeoutSeconds * TIMEOUT_MUTLIPLIPER);
-
-    return nextTimeout > MAX_SLEEP_TIMEOUT_SECONDS ? MAX_SLEEP_TIMEOUT_SECONDS : nextTimeout;
-  }
-
-  private ClusterHealthStatus getClusterHealthStatus() {
-    return client.admin().cluster().prepareHealth(indexName).execute()
-        .actionGet(GET_HEALTH_STATUS_TIMEOUT_SECONDS, TimeUnit.SECONDS).getStatus();
+    log.info("[{}] Checking for cluster state before loading.", id);
+    healthMonitor.awaitGreen(id);
   }
 
 }
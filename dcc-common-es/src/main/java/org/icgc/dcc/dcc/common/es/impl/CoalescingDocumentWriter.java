@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.propagate;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.icgc.dcc.dcc.common.es.core.DocumentWriter;
+import org.icgc.dcc.dcc.common.es.core.DocumentWriterMetrics;
+import org.icgc.dcc.dcc.common.es.model.IndexDocument;
+import org.icgc.dcc.dcc.common.es.model.StreamingIndexDocument;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link DocumentWriter} which buffers documents and passes only the last written version of each document to the
+ * {@code delegate}. Superseded versions are never sent to the cluster.
+ * <p>
+ * Sources are captured as JSON tokens when written, so callers may reuse their {@code ObjectNode}s and source
+ * generators run while their inputs are still valid. The buffer is flushed once it holds {@code maxDocuments}, by a
+ * background task once the oldest buffered document is older than {@code windowMillis}, and on close. A failure of
+ * the background flush is rethrown by the next write or close. Not thread safe.
+ */
+@Slf4j
+public class CoalescingDocumentWriter implements DocumentWriter {
+
+  /**
+   * Constants.
+   */
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final int CLOSE_TIMEOUT_MINUTES = 1;
+
+  /**
+   * Dependencies.
+   */
+  private final DocumentWriter delegate;
+  private final ScheduledExecutorService flusher;
+
+  /**
+   * Configuration.
+   */
+  private final int maxDocuments;
+  private final long windowNanos;
+
+  /**
+   * State. Guarded by this, as the buffer is flushed by both the writing thread and the {@code flusher}.
+   */
+  // Pending writes in the order of their last version
+  private final Map<Key, Write> buffer = new LinkedHashMap<>();
+  private long windowStart;
+  private long supersededCount;
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  public CoalescingDocumentWriter(@NonNull DocumentWriter delegate, int maxDocuments, long windowMillis) {
+    checkArgument(maxDocuments > 0, "Max documents must be positive: %s", maxDocuments);
+    checkArgument(windowMillis > 0, "Coalescing window must be positive: %s", windowMillis);
+    this.delegate = delegate;
+    this.maxDocuments = maxDocuments;
+    this.windowNanos = MILLISECONDS.toNanos(windowMillis);
+    this.flusher = newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("es-coalescing-writer-%d")
+        .setDaemon(true)
+        .build());
+    flusher.scheduleWithFixedDelay(this::flushExpired, windowMillis, windowMillis, MILLISECONDS);
+  }
+
+  @Override
+  public void write(@NonNull IndexDocument document) throws IOException {
+    val source = new TokenBuffer(MAPPER, false);
+    MAPPER.writeTree(source, document.getSource());
+    buffer(new Write(document.getId(), document.getType(), source));
+  }
+
+  @Override
+  public void write(@NonNull StreamingIndexDocument document) throws IOException {
+    val source = new TokenBuffer(MAPPER, false);
+    document.getSource().generate(source);
+    buffer(new Write(document.getId(), document.getType(), source));
+  }
+
+  @Override
+  public DocumentWriterMetrics getMetrics() {
+    return delegate.getMetrics();
+  }
+
+  @Override
+  @SneakyThrows
+  public void close() throws IOException {
+    flusher.shutdown();
+    flusher.awaitTermination(CLOSE_TIMEOUT_MINUTES, MINUTES);
+
+    try {
+      synchronized (this) {
+        checkFailure();
+        flush();
+        log.info("Skipped {} superseded documents", supersededCount);
+      }
+    } finally {
+      delegate.close();
+    }
+  }
+
+  private synchronized void buffer(Write write) throws IOException {
+    checkFailure();
+    if (buffer.isEmpty()) {
+      windowStart = System.nanoTime();
+    }
+
+    // Removed first, so the document is written in the order of its last version
+    val key = new Key(write.getType().getIndexType(), write.getId());
+    if (buffer.remove(key) != null) {
+      supersededCount++;
+    }
+
+    buffer.put(key, write);
+    if (buffer.size() >= maxDocuments || isExpired()) {
+      flush();
+    }
+  }
+
+  /**
+   * Flushes the buffer once the window expires, even if no more documents are written.
+   */
+  private synchronized void flushExpired() {
+    if (failure.get() != null || buffer.isEmpty() || !isExpired()) {
+      return;
+    }
+
+    try {
+      flush();
+    } catch (Throwable t) {
+      log.error("Failed to flush coalesced documents: ", t);
+      failure.compareAndSet(null, t);
+    }
+  }
+
+  private boolean isExpired() {
+    return System.nanoTime() - windowStart >= windowNanos;
+  }
+
+  private void flush() throws IOException {
+    for (val write : buffer.values()) {
+      val source = write.getSource();
+      delegate.write(new StreamingIndexDocument(write.getId(), source::serialize, write.getType()));
+    }
+
+    buffer.clear();
+  }
+
+  private void checkFailure() {
+    val throwable = failure.get();
+    if (throwable != null) {
+      throw propagate(throwable);
+    }
+  }
+
+  @Value
+  private static class Key {
+
+    String type;
+    String id;
+
+  }
+
+  @Value
+  private static class Write {
+
+    String id;
+    IndexDocumentType type;
+    TokenBuffer source;
+
+  }
+
+}
@@ -18,26 +18,50 @@
 package org.icgc.dcc.dcc.common.es.impl;
 
 import static com.google.common.base.Throwables.propagate;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.elasticsearch.client.Requests.indexRequest;
 import static org.elasticsearch.common.xcontent.XContentType.SMILE;
 import static org.icgc.dcc.common.core.util.Formats.formatCount;
+import static org.icgc.dcc.dcc.common.es.impl.DocumentSpool.NO_SEQUENCE;
 import static org.icgc.dcc.dcc.common.es.util.BulkProcessorConfiguration.getBulkSize;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkProcessor;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.unit.ByteSizeValue;
-import org.icgc.dcc.dcc.common.es.core.DocumentWriter;
+import org.icgc.dcc.dcc.common.es.core.AsyncDocumentWriter;
+import org.icgc.dcc.dcc.common.es.core.DocumentWriterMetrics;
+import org.icgc.dcc.dcc.common.es.core.ExhausedRetryException;
 import org.icgc.dcc.dcc.common.es.json.JacksonFactory;
 import org.icgc.dcc.dcc.common.es.model.IndexDocument;
+import org.icgc.dcc.dcc.common.es.model.SourceGenerator;
+import org.icgc.dcc.dcc.common.es.model.StreamingIndexDocument;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.SneakyThrows;
 import lombok.val;
 import lombok.extern.slf4j.Slf4j;
 
@@ -45,12 +69,16 @@ import lombok.extern.slf4j.Slf4j;
  * Output destination for {@link IndexDocument} instances to be written.
  */
 @Slf4j
-public class DefaultDocumentWriter implements DocumentWriter {
+public class DefaultDocumentWriter implements AsyncDocumentWriter {
 
   /**
    * Constants.
    */
   private static final ObjectWriter BINARY_WRITER = JacksonFactory.getObjectWriter();
+  private static final int SPOOL_DRAIN_INTERVAL_SECONDS = 5;
+  private static final int SPOOL_DRAIN_TIMEOUT_MINUTES = 15;
+  private static final int ACKNOWLEDGEMENT_THREAD_KEEP_ALIVE_SECONDS = 60;
+  private static final int ACKNOWLEDGEMENT_TIMEOUT_MINUTES = 15;
 
   /**
    * Meta data.
@@ -63,6 +91,7 @@ public class DefaultDocumentWriter implements DocumentWriter {
    */
   private final String writerId;
   private final ByteSizeValue bulkSize;
+  private final BulkSizeController bulkSizeController;
 
   /**
    * Batching state.
@@ -70,6 +99,28 @@ public class DefaultDocumentWriter implements DocumentWriter {
   @Getter
   private final IndexingState indexingState;
   private final BulkProcessor processor;
+  private final ScheduledExecutorService retryExecutor;
+  private final ClusterHealthMonitor healthMonitor;
+  private final BulkLoadMode bulkLoadMode;
+
+  /**
+   * Spooling of documents while the cluster is unavailable. Null if disabled.
+   */
+  private final DocumentSpool spool;
+  private final ScheduledExecutorService spoolDrainer;
+  // Spooled requests of writeAsync by their spool sequence, acknowledged once replayed
+  private final Map<Long, AcknowledgedIndexRequest> spooledRequests = new ConcurrentHashMap<>();
+  private long spoolSequence;
+  private final MemoryBudget.Account memoryAccount;
+  // Null if retries are disabled
+  private final LatestWrites latestWrites;
+
+  /**
+   * Acknowledgements of {@link #writeAsync} requests. They are completed on the acknowledgement thread rather than the
+   * transport thread, so stages of the caller don't run inline in the bulk response handling.
+   */
+  private final ExecutorService acknowledgementExecutor;
+  private final Set<AcknowledgedIndexRequest> unacknowledgedRequests = ConcurrentHashMap.newKeySet();
 
   // Holding a reference to the client to be able to close it, as the caller might not have reference to it.
   private final Client client;
@@ -77,45 +128,169 @@ public class DefaultDocumentWriter implements DocumentWriter {
   /**
    * Status.
    */
+  private final IndexingMetrics metrics;
   private int documentCount;
+  private final SourceSerializer sourceSerializer = new SourceSerializer();
 
   public DefaultDocumentWriter(DocumentWriterContext context) {
     this.indexName = context.getIndexName();
     this.writerId = context.getWriterId();
     this.indexingState = context.getIndexingState();
     this.processor = context.getBulkProcessor();
+    this.retryExecutor = context.getRetryExecutor();
+    this.healthMonitor = context.getHealthMonitor();
+    this.metrics = context.getMetrics();
+    this.bulkLoadMode = context.getBulkLoadMode();
+    this.spool = context.getSpool();
+    this.memoryAccount = context.getMemoryAccount();
+    this.latestWrites = context.getLatestWrites();
+    this.spoolDrainer = spool == null ? null : createSpoolDrainer();
+    this.acknowledgementExecutor = createAcknowledgementExecutor();
     this.client = context.getClient();
     this.bulkSize = getBulkSize(context.getBulkSizeMb());
+    this.bulkSizeController = context.getBulkSizeController();
     log.info("[{}] Created ES document writer.", writerId);
   }
 
   @Override
   public void write(@NonNull IndexDocument document) throws IOException {
-    byte[] source = createSource(document.getSource());
+    val source = createSourceReference(document.getSource());
+    write(document.getId(), document.getType(), source);
+  }
+
+  @Override
+  public void write(@NonNull StreamingIndexDocument document) throws IOException {
+    val source = createSourceReference(document.getSource());
     write(document.getId(), document.getType(), source);
   }
 
   protected void write(String id, IndexDocumentType type, byte[] source) {
-    if (isBigDocument(source.length)) {
+    write(id, type, new BytesArray(source));
+  }
+
+  @Override
+  public CompletableFuture<BulkItemResponse> writeAsync(@NonNull IndexDocument document) throws IOException {
+    val source = createSourceReference(document.getSource());
+    return writeAsync(document.getId(), document.getType(), source);
+  }
+
+  @Override
+  public CompletableFuture<BulkItemResponse> writeAsync(@NonNull StreamingIndexDocument document)
+      throws IOException {
+    val source = createSourceReference(document.getSource());
+    return writeAsync(document.getId(), document.getType(), source);
+  }
+
+  protected void write(String id, IndexDocumentType type, BytesReference source) {
+    if (isSpooling()) {
+      spool(null, id, type, source);
+      return;
+    }
+
+    add(indexRequest(indexName), id, type, source);
+  }
+
+  protected CompletableFuture<BulkItemResponse> writeAsync(String id, IndexDocumentType type, BytesReference source) {
+    val request = new AcknowledgedIndexRequest(indexName);
+    val acknowledgement = trackAcknowledgement(request);
+    if (isSpooling()) {
+      spool(request, id, type, source);
+    } else {
+      add(request, id, type, source);
+    }
+
+    return acknowledgement;
+  }
+
+  private CompletableFuture<BulkItemResponse> trackAcknowledgement(AcknowledgedIndexRequest request) {
+    val acknowledgement = new CompletableFuture<BulkItemResponse>();
+    unacknowledgedRequests.add(request);
+    request.getAcknowledgement().whenCompleteAsync((response, failure) -> {
+      unacknowledgedRequests.remove(request);
+      if (failure != null) {
+        acknowledgement.completeExceptionally(failure);
+      } else {
+        acknowledgement.complete(response);
+      }
+    }, acknowledgementExecutor);
+
+    return acknowledgement;
+  }
+
+  private void add(IndexRequest request, String id, IndexDocumentType type, BytesReference source) {
+    indexingState.awaitRetryCapacity();
+    val length = source.length();
+    if (isBigDocument(length) || bulkSizeController.isBulkFull(length)) {
       processor.flush();
     }
 
-    val request = createRequest(id, type, source);
+    memoryAccount.acquire(length);
+    bulkSizeController.addPendingBytes(length);
+    request.type(type.getIndexType()).id(id).source(source, SMILE);
+    if (latestWrites != null) {
+      latestWrites.add(request);
+    }
+
     processor.add(request);
     documentCount++;
+    metrics.recordDocument(length);
+  }
+
+  @Override
+  public DocumentWriterMetrics getMetrics() {
+    return metrics;
   }
 
   @Override
   public void close() throws IOException {
+    try {
+      closeProcessor();
+    } finally {
+      try {
+        if (bulkLoadMode != null) {
+          bulkLoadMode.release(client);
+        }
+      } finally {
+        client.close();
+      }
+    }
+  }
+
+  /**
+   * Flushes the remaining documents and waits for the pending requests. Does not close the {@code client} so it could
+   * be shared with other writers.
+   */
+  void closeProcessor() {
     log.debug("Trying to close the document writer...");
-    // Initiate an index request which will set the pendingBulkRequest
-    processor.flush();
+    try {
+      if (spool != null) {
+        closeSpool();
+      }
+
+      // Initiate an index request which will set the pendingBulkRequest
+      processor.flush();
+
+      log.info("[{}] Closing bulk processor...", writerId);
+      try {
+        indexingState.waitForPendingRequests();
+      } finally {
+        closeAcknowledgements();
+      }
+    } finally {
+      // Even if the pending requests timed out, so their bytes don't stay in the budget of the other writers
+      memoryAccount.close();
+      processor.close();
+      retryExecutor.shutdown();
+      healthMonitor.release();
+      metrics.unregister();
+    }
 
-    log.info("[{}] Closing bulk processor...", writerId);
-    indexingState.waitForPendingRequests();
-    processor.close();
-    client.close();
     log.info("[{}] Finished indexing {} documents", writerId, formatCount(documentCount));
+
+    if (spool != null && !spool.isEmpty()) {
+      throw new IllegalStateException("The cluster is unavailable. Failed to replay the spooled documents of writer '"
+          + writerId + "'. They are left to be replayed by the next writer.");
+    }
   }
 
   protected static byte[] createSource(Object document) {
@@ -126,8 +301,132 @@ public class DefaultDocumentWriter implements DocumentWriter {
     }
   }
 
-  private IndexRequest createRequest(String id, IndexDocumentType type, byte[] source) {
-    return indexRequest(indexName).type(type.getIndexType()).id(id).source(source, SMILE);
+  protected BytesReference createSourceReference(ObjectNode document) throws IOException {
+    val start = System.nanoTime();
+    val source = sourceSerializer.serialize(document);
+    metrics.recordSerialization(System.nanoTime() - start);
+
+    return source;
+  }
+
+  /**
+   * Serializes the source directly into the buffer which is handed over to the {@link IndexRequest}.
+   * 
+   * @see SourceSerializer
+   */
+  protected BytesReference createSourceReference(SourceGenerator sourceGenerator) throws IOException {
+    val start = System.nanoTime();
+    val source = sourceSerializer.serialize(sourceGenerator);
+    metrics.recordSerialization(System.nanoTime() - start);
+
+    return source;
+  }
+
+  /**
+   * Documents are spooled while the cluster is unavailable and, to preserve their order, until the spool is drained.
+   */
+  private boolean isSpooling() {
+    return spool != null && (!spool.isEmpty() || healthMonitor.isUnavailable());
+  }
+
+  /**
+   * @param request acknowledged once replayed. Null if not acknowledged
+   */
+  @SneakyThrows
+  private void spool(AcknowledgedIndexRequest request, String id, IndexDocumentType type, BytesReference source) {
+    long sequence = NO_SEQUENCE;
+    if (request != null) {
+      sequence = spoolSequence++;
+      spooledRequests.put(sequence, request);
+    }
+
+    spool.append(indexName, id, type.getIndexType(), sequence, source);
+    documentCount++;
+    metrics.recordDocument(source.length());
+  }
+
+  private ScheduledExecutorService createSpoolDrainer() {
+    val executor = newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("es-writer-" + writerId + "-spool-%d")
+        .setDaemon(true)
+        .build());
+    executor.scheduleWithFixedDelay(this::drainSpool, SPOOL_DRAIN_INTERVAL_SECONDS, SPOOL_DRAIN_INTERVAL_SECONDS,
+        SECONDS);
+
+    return executor;
+  }
+
+  /**
+   * Replays the spooled segments while the cluster is available.
+   */
+  private void drainSpool() {
+    try {
+      Path segment;
+      while (!healthMonitor.isUnavailable() && (segment = spool.peekSegment()) != null) {
+        log.info("[{}] Replaying spooled documents from '{}'...", writerId, segment);
+        spool.replay(segment, (index, id, type, sequence, source) -> {
+          memoryAccount.acquire(source.length());
+          bulkSizeController.addPendingBytes(source.length());
+          val request = getSpooledRequest(index, sequence).type(type).id(id).source(source, SMILE);
+          if (latestWrites != null) {
+            latestWrites.add(request);
+          }
+
+          processor.add(request);
+        });
+        spool.remove(segment);
+      }
+    } catch (Exception e) {
+      log.error("[{}] Failed to replay spooled documents: ", writerId, e);
+    }
+  }
+
+  /**
+   * A segment which failed to be replayed is replayed again as a whole, so its requests of {@code writeAsync} might
+   * already be removed.
+   */
+  private IndexRequest getSpooledRequest(String index, long sequence) {
+    val request = sequence == NO_SEQUENCE ? null : spooledRequests.remove(sequence);
+
+    return request != null ? request : indexRequest(index);
+  }
+
+  /**
+   * Replays the remaining documents if the cluster is available. Otherwise they are left in the spool and
+   * {@link #closeProcessor()} fails once the pending requests are completed.
+   */
+  @SneakyThrows
+  private void closeSpool() {
+    spoolDrainer.shutdown();
+    spoolDrainer.awaitTermination(SPOOL_DRAIN_TIMEOUT_MINUTES, MINUTES);
+    drainSpool();
+    spool.close();
+  }
+
+  /**
+   * Fails the acknowledgements still pending, e.g. when the pending requests timed out, so that callers are not left
+   * waiting for them. Completes the queued acknowledgements before returning.
+   */
+  @SneakyThrows
+  private void closeAcknowledgements() {
+    if (!unacknowledgedRequests.isEmpty()) {
+      log.error("[{}] Failing {} unacknowledged documents", writerId, unacknowledgedRequests.size());
+      AcknowledgedIndexRequest.fail(ImmutableList.copyOf(unacknowledgedRequests), new ExhausedRetryException());
+    }
+
+    acknowledgementExecutor.shutdown();
+    if (!acknowledgementExecutor.awaitTermination(ACKNOWLEDGEMENT_TIMEOUT_MINUTES, MINUTES)) {
+      log.warn("[{}] Acknowledgements are not completed after {} mins", writerId, ACKNOWLEDGEMENT_TIMEOUT_MINUTES);
+    }
+  }
+
+  private ExecutorService createAcknowledgementExecutor() {
+    // A single thread, started on demand, completes the acknowledgements in order
+    return new ThreadPoolExecutor(0, 1, ACKNOWLEDGEMENT_THREAD_KEEP_ALIVE_SECONDS, SECONDS, new LinkedBlockingQueue<>(),
+        new ThreadFactoryBuilder()
+            .setNameFormat("es-writer-" + writerId + "-ack-%d")
+            .setDaemon(true)
+            .build());
   }
 
   private boolean isBigDocument(int length) {
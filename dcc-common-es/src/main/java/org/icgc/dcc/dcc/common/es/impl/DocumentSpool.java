@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.elasticsearch.common.unit.ByteSizeUnit.MB;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.stream.Stream;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+import lombok.NonNull;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-ahead log of serialized documents which could not be sent to the cluster, stored as segment files in a local
+ * directory. Segments are replayed oldest first and deleted once replayed. Segments left by a previous writer using
+ * the same directory are picked up on creation. The directory is locked until the spool is closed, so it can't be
+ * shared by writers running at the same time.
+ * <p>
+ * Data is flushed to the file system when a segment is closed, so a crash may lose the tail of the current segment. A
+ * truncated record at the end of a segment is skipped on replay.
+ */
+@Slf4j
+public class DocumentSpool implements Closeable {
+
+  /**
+   * Constants.
+   */
+  public static final long NO_SEQUENCE = -1;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".spool";
+  private static final String LOCK_FILE = ".lock";
+  private static final long MAX_SEGMENT_BYTES = new ByteSizeValue(64, MB).getBytes();
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Configuration.
+   */
+  private final Path dir;
+  // Segments before it were left by a previous writer
+  private final long firstSegmentNumber;
+  private final FileChannel lockChannel;
+  private final FileLock lock;
+
+  /**
+   * State. Guarded by this.
+   */
+  // Closed segments, oldest first
+  private final Deque<Path> segments = new ArrayDeque<>();
+  private long nextSegmentNumber;
+  private DataOutputStream output;
+  private Path currentSegment;
+  private long currentSegmentBytes;
+
+  public DocumentSpool(@NonNull Path dir) throws IOException {
+    this.dir = Files.createDirectories(dir);
+    this.lockChannel = FileChannel.open(dir.resolve(LOCK_FILE), CREATE, WRITE);
+    this.lock = tryLock(lockChannel);
+    if (lock == null) {
+      lockChannel.close();
+      throw new IOException("Spool directory '" + dir + "' is used by another writer");
+    }
+
+    try (Stream<Path> files = Files.list(dir)) {
+      files.filter(DocumentSpool::isSegment)
+          .sorted(Comparator.comparingLong(DocumentSpool::getSegmentNumber))
+          .forEach(segments::add);
+    }
+
+    nextSegmentNumber = segments.isEmpty() ? 0 : getSegmentNumber(segments.peekLast()) + 1;
+    firstSegmentNumber = nextSegmentNumber;
+    if (!segments.isEmpty()) {
+      log.info("Found {} spooled segments in '{}'. They will be replayed.", segments.size(), dir);
+    }
+  }
+
+  public synchronized boolean isEmpty() {
+    return segments.isEmpty() && currentSegment == null;
+  }
+
+  /**
+   * Appends a document to the current segment.
+   * 
+   * @param sequence identifies the document to the writer on replay. {@link #NO_SEQUENCE} if not needed
+   */
+  public synchronized void append(String index, String id, String type, long sequence, BytesReference source)
+      throws IOException {
+    if (output == null) {
+      openSegment();
+    }
+
+    output.writeUTF(index);
+    output.writeUTF(id);
+    output.writeUTF(type);
+    output.writeLong(sequence);
+    output.writeInt(source.length());
+    source.writeTo(output);
+
+    currentSegmentBytes += source.length();
+    if (currentSegmentBytes >= MAX_SEGMENT_BYTES) {
+      closeSegment();
+    }
+  }
+
+  /**
+   * Returns the oldest segment to replay, closing the current one if there are no others. The segment stays in the
+   * spool until it's {@link #remove(Path)}d.
+   * 
+   * @return {@code null} if the spool is empty
+   */
+  public synchronized Path peekSegment() throws IOException {
+    if (segments.isEmpty() && output != null) {
+      closeSegment();
+    }
+
+    return segments.peekFirst();
+  }
+
+  public synchronized void remove(@NonNull Path segment) throws IOException {
+    segments.remove(segment);
+    Files.deleteIfExists(segment);
+  }
+
+  /**
+   * Reads all the records of the {@code segment}. Sequences of the records left by a previous writer are replayed as
+   * {@link #NO_SEQUENCE}, as they are meaningless to this one.
+   */
+  public void replay(@NonNull Path segment, @NonNull RecordConsumer consumer) throws IOException {
+    val previousWriter = getSegmentNumber(segment) < firstSegmentNumber;
+    val inputStream = new BufferedInputStream(Files.newInputStream(segment), BUFFER_SIZE);
+    try (DataInputStream input = new DataInputStream(inputStream)) {
+      while (true) {
+        String index;
+        try {
+          index = input.readUTF();
+        } catch (EOFException e) {
+          return;
+        }
+
+        try {
+          val id = input.readUTF();
+          val type = input.readUTF();
+          val sequence = input.readLong();
+          val source = new byte[input.readInt()];
+          input.readFully(source);
+          consumer.accept(index, id, type, previousWriter ? NO_SEQUENCE : sequence, new BytesArray(source));
+        } catch (EOFException e) {
+          log.warn("Skipping truncated record at the end of segment '{}'", segment);
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Closes the current segment and releases the directory lock. The remaining segments are left for the next writer.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      if (output != null) {
+        closeSegment();
+      }
+    } finally {
+      lock.release();
+      lockChannel.close();
+    }
+  }
+
+  private void openSegment() throws IOException {
+    currentSegment = dir.resolve(SEGMENT_PREFIX + nextSegmentNumber++ + SEGMENT_SUFFIX);
+    currentSegmentBytes = 0;
+    output = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(currentSegment, CREATE_NEW, WRITE), BUFFER_SIZE));
+    log.debug("Opened spool segment '{}'", currentSegment);
+  }
+
+  private void closeSegment() throws IOException {
+    output.close();
+    segments.add(currentSegment);
+    log.debug("Closed spool segment '{}' ({} bytes)", currentSegment, currentSegmentBytes);
+
+    output = null;
+    currentSegment = null;
+  }
+
+  private static FileLock tryLock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      // Locked by this JVM
+      return null;
+    }
+  }
+
+  private static boolean isSegment(Path file) {
+    val name = file.getFileName().toString();
+
+    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+  }
+
+  private static long getSegmentNumber(Path segment) {
+    val name = segment.getFileName().toString();
+
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  @FunctionalInterface
+  public interface RecordConsumer {
+
+    void accept(String index, String id, String type, long sequence, BytesReference source) throws IOException;
+
+  }
+
+}
@@ -17,6 +17,9 @@
  */
 package org.icgc.dcc.dcc.common.es.impl;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+
 import org.elasticsearch.action.bulk.BulkProcessor;
 import org.elasticsearch.client.Client;
 
@@ -33,5 +36,20 @@ public class DocumentWriterContext {
   BulkProcessor bulkProcessor;
   String writerId;
   Integer bulkSizeMb;
+  BulkSizeController bulkSizeController;
+  ScheduledExecutorService retryExecutor;
+  ClusterHealthMonitor healthMonitor;
+  IndexingMetrics metrics;
+  // Null if disabled
+  BulkLoadMode bulkLoadMode;
+  // Null if disabled
+  DocumentSpool spool;
+  // Shared by the writers of a parallel writer. Null if disabled
+  ShardRouter shardRouter;
+  // Null if documents of a parallel writer are assigned by their id
+  Function<String, String> routingKey;
+  MemoryBudget.Account memoryAccount;
+  // Null if retries are disabled
+  LatestWrites latestWrites;
 
 }
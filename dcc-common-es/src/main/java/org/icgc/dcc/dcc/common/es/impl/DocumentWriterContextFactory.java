@@ -17,28 +17,43 @@
  */
 package org.icgc.dcc.dcc.common.es.impl;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import static lombok.AccessLevel.PRIVATE;
 import static org.elasticsearch.action.bulk.BulkProcessor.builder;
-import static org.icgc.dcc.dcc.common.es.TransportClientFactory.createClient;
-import static org.icgc.dcc.dcc.common.es.util.BulkProcessorConfiguration.DEFAULT_BULK_SIZE_MB;
+import static org.icgc.dcc.common.core.util.stream.Collectors.toImmutableList;
+import static org.icgc.dcc.dcc.common.es.TransportClientFactory.acquireClient;
+import static org.icgc.dcc.dcc.common.es.util.BulkProcessorConfiguration.getBulkActions;
 import static org.icgc.dcc.dcc.common.es.util.BulkProcessorConfiguration.getBulkSize;
-
+import static org.icgc.dcc.dcc.common.es.util.BulkProcessorConfiguration.getConcurrentRequests;
+import static org.icgc.dcc.dcc.common.es.util.BulkProcessorConfiguration.getFlushInterval;
+import static org.icgc.dcc.dcc.common.es.util.BulkProcessorConfiguration.getMaxInFlightRequests;
+import static org.icgc.dcc.dcc.common.es.util.BulkProcessorConfiguration.getMaxRetries;
+import static org.icgc.dcc.dcc.common.es.util.BulkProcessorConfiguration.getTargetBulkLatency;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.IntStream;
 
 import org.elasticsearch.action.bulk.BulkProcessor;
 import org.elasticsearch.client.Client;
 import org.icgc.dcc.dcc.common.es.DocumentWriterConfiguration;
-import org.icgc.dcc.dcc.common.es.TransportClientFactory;
+import org.icgc.dcc.dcc.common.es.core.DeadLetterSink;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import lombok.SneakyThrows;
 import lombok.val;
 
 @NoArgsConstructor(access = PRIVATE)
 public final class DocumentWriterContextFactory {
 
   private static final Random RANDOM_GENERATOR = new Random();
-  private static final int BULK_ACTIONS = -1; // Unlimited
 
   /**
    * Creates {@link DocumentWriterContext} where {@link Client} has {@code sniffMode} disabled.
@@ -48,29 +63,75 @@ public final class DocumentWriterContextFactory {
   }
 
   public static DocumentWriterContext createContext(@NonNull String indexName, @NonNull String esUri, boolean sniff) {
-    val client = TransportClientFactory.createClient(esUri, sniff);
+    val client = acquireClient(esUri, sniff);
 
     return createContext(client, indexName);
   }
 
   public static DocumentWriterContext createContext(@NonNull DocumentWriterConfiguration configuration) {
-    val client = configuration.client() != null ? configuration.client() : createClient(configuration.esUrl());
-    val indexName = configuration.indexName();
+    val client = resolveClient(configuration);
 
-    return createContext(client, indexName, configuration.bulkSizeMb());
+    return createContext(client, configuration);
+  }
+
+  /**
+   * Creates {@code count} {@link DocumentWriterContext}s which share the same {@link Client}. Their metrics are
+   * aggregated by a common parent.
+   */
+  public static List<DocumentWriterContext> createContexts(@NonNull DocumentWriterConfiguration configuration,
+      int count) {
+    checkArgument(count > 0, "Writer contexts count must be positive: %s", count);
+    val client = resolveClient(configuration);
+    val metrics = IndexingMetrics.create("parallel-" + createWriterId());
+    val bulkLoadMode = createBulkLoadMode(client, configuration);
+    val shardRouter = createShardRouter(client, configuration);
+
+    return IntStream.range(0, count)
+        .mapToObj(i -> createContext(client, configuration, metrics, bulkLoadMode, resolveSpoolDir(configuration, i),
+            shardRouter))
+        .collect(toImmutableList());
   }
 
   public static DocumentWriterContext createContext(@NonNull Client client, @NonNull String indexName) {
-    return createContext(client, indexName, DEFAULT_BULK_SIZE_MB);
+    return createContext(client, indexName, null);
   }
 
   public static DocumentWriterContext createContext(@NonNull Client client, @NonNull String indexName,
       Integer bulkSizeMb) {
+    val configuration = new DocumentWriterConfiguration()
+        .indexName(indexName)
+        .bulkSizeMb(bulkSizeMb);
+
+    return createContext(client, configuration);
+  }
+
+  private static DocumentWriterContext createContext(Client client, DocumentWriterConfiguration configuration) {
+    val bulkLoadMode = createBulkLoadMode(client, configuration);
+
+    return createContext(client, configuration, IndexingMetrics.getGlobal(), bulkLoadMode,
+        resolveSpoolDir(configuration), null);
+  }
+
+  private static DocumentWriterContext createContext(Client client, DocumentWriterConfiguration configuration,
+      IndexingMetrics parentMetrics, BulkLoadMode bulkLoadMode, Path spoolDir, ShardRouter shardRouter) {
+    val indexName = configuration.indexName();
     val writerId = createWriterId();
-    val indexingState = new IndexingState(writerId);
-    val clusterStateVerifier = new ClusterStateVerifier(client, indexName, writerId, indexingState);
-    val bulkProcessorListener = new BulkProcessorListener(clusterStateVerifier, indexingState, writerId);
-    val bulkProcessor = createProcessor(client, bulkProcessorListener, bulkSizeMb);
+    val metrics = IndexingMetrics.create(writerId, parentMetrics);
+    val concurrentRequests = getConcurrentRequests(configuration.concurrentRequests());
+    val maxInFlightRequests = getMaxInFlightRequests(configuration.maxInFlightRequests(), concurrentRequests);
+    val maxRetries = getMaxRetries(configuration.maxRetries());
+    val indexingState = new IndexingState(writerId, maxInFlightRequests, maxRetries);
+    val healthMonitor = ClusterHealthMonitor.acquire(client, indexName);
+    val clusterStateVerifier = new ClusterStateVerifier(healthMonitor, writerId, indexingState);
+    val bulkSizeController = createBulkSizeController(configuration);
+    val retryExecutor = createRetryExecutor(writerId);
+    val memoryAccount = MemoryBudget.getGlobal().register(writerId, metrics);
+    val latestWrites = maxRetries > 0 ? new LatestWrites() : null;
+    val bulkProcessorListener =
+        new BulkProcessorListener(clusterStateVerifier, indexingState, writerId, bulkSizeController, retryExecutor,
+            resolveDeadLetterSink(configuration), metrics, memoryAccount, latestWrites);
+    val bulkProcessor = createProcessor(client, bulkProcessorListener, configuration, concurrentRequests);
+    memoryAccount.setFlusher(bulkProcessor::flush);
 
     return DocumentWriterContext.builder()
         .client(client)
@@ -78,20 +139,96 @@ public final class DocumentWriterContextFactory {
         .indexingState(indexingState)
         .bulkProcessor(bulkProcessor)
         .writerId(writerId)
+        .bulkSizeMb(configuration.bulkSizeMb())
+        .bulkSizeController(bulkSizeController)
+        .retryExecutor(retryExecutor)
+        .healthMonitor(healthMonitor)
+        .metrics(metrics)
+        .bulkLoadMode(bulkLoadMode)
+        .spool(spoolDir == null ? null : createSpool(spoolDir))
+        .shardRouter(shardRouter)
+        .routingKey(configuration.routingKey())
+        .memoryAccount(memoryAccount)
+        .latestWrites(latestWrites)
         .build();
   }
 
+  private static Client resolveClient(DocumentWriterConfiguration configuration) {
+    return configuration.client() != null ? configuration.client() : acquireClient(configuration.esUrl(), false);
+  }
+
+  /**
+   * Acquires the bulk load mode if configured. Shared by all the writers of the index.
+   */
+  private static BulkLoadMode createBulkLoadMode(Client client, DocumentWriterConfiguration configuration) {
+    if (!Boolean.TRUE.equals(configuration.bulkLoadMode())) {
+      return null;
+    }
+
+    val asyncTranslog = Boolean.TRUE.equals(configuration.asyncTranslog());
+
+    return BulkLoadMode.acquire(client, configuration.indexName(), asyncTranslog, configuration.maxSegments());
+  }
+
+  private static ShardRouter createShardRouter(Client client, DocumentWriterConfiguration configuration) {
+    if (!Boolean.TRUE.equals(configuration.shardAware())) {
+      return null;
+    }
+
+    return new ShardRouter(client, configuration.indexName());
+  }
+
+  private static Path resolveSpoolDir(DocumentWriterConfiguration configuration) {
+    return configuration.spoolDir() == null ? null : Paths.get(configuration.spoolDir());
+  }
+
+  /**
+   * Each writer of a parallel writer spools to its own sub-directory, so the spool is found again by the same shard.
+   */
+  private static Path resolveSpoolDir(DocumentWriterConfiguration configuration, int shard) {
+    val spoolDir = resolveSpoolDir(configuration);
+
+    return spoolDir == null ? null : spoolDir.resolve("shard-" + shard);
+  }
+
+  @SneakyThrows
+  private static DocumentSpool createSpool(Path spoolDir) {
+    return new DocumentSpool(spoolDir);
+  }
+
+  private static DeadLetterSink resolveDeadLetterSink(DocumentWriterConfiguration configuration) {
+    return configuration.deadLetterSink() != null ? configuration.deadLetterSink() : new LoggingDeadLetterSink();
+  }
+
   private static String createWriterId() {
     val id = RANDOM_GENERATOR.nextInt(Integer.MAX_VALUE);
 
     return String.valueOf(Math.abs(id));
   }
 
-  private static BulkProcessor createProcessor(Client client, BulkProcessorListener listener, Integer bulkSizeMb) {
+  private static BulkSizeController createBulkSizeController(DocumentWriterConfiguration configuration) {
+    val maxBulkSize = getBulkSize(configuration.bulkSizeMb());
+    val adaptive = Boolean.TRUE.equals(configuration.adaptiveBulkSize());
+
+    return new BulkSizeController(maxBulkSize, adaptive, getTargetBulkLatency(configuration.targetBulkLatencyMs()));
+  }
+
+  private static ScheduledExecutorService createRetryExecutor(String writerId) {
+    val threadFactory = new ThreadFactoryBuilder()
+        .setNameFormat("es-writer-" + writerId + "-retry-%d")
+        .setDaemon(true)
+        .build();
+
+    return newSingleThreadScheduledExecutor(threadFactory);
+  }
+
+  private static BulkProcessor createProcessor(Client client, BulkProcessorListener listener,
+      DocumentWriterConfiguration configuration, int concurrentRequests) {
     val bulkProcessor = builder(client, listener)
-        .setBulkActions(BULK_ACTIONS)
-        .setBulkSize(getBulkSize(bulkSizeMb))
-        .setConcurrentRequests(0)
+        .setBulkActions(getBulkActions(configuration.bulkActions()))
+        .setBulkSize(getBulkSize(configuration.bulkSizeMb()))
+        .setFlushInterval(getFlushInterval(configuration.flushIntervalSeconds()))
+        .setConcurrentRequests(concurrentRequests)
         .build();
 
     // Need to give back reference to bulkProcessor as it's reused for re-indexing of failed requests.
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.icgc.dcc.dcc.common.es.core.DocumentWriterMetrics;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link DocumentWriterMetrics} of a writer. Every recorded value is propagated to the {@code parent}, so the parent
+ * aggregates all its children.
+ */
+@Slf4j
+public class IndexingMetrics implements DocumentWriterMetrics {
+
+  /**
+   * Constants.
+   */
+  private static final String OBJECT_NAME_FORMAT = "org.icgc.dcc.common.es:type=DocumentWriter,name=%s";
+  private static final IndexingMetrics GLOBAL = createGlobal();
+
+  /**
+   * Meta data.
+   */
+  private final String id;
+  @Getter
+  private final IndexingMetrics parent;
+  private final long startNanos = System.nanoTime();
+
+  /**
+   * State.
+   */
+  private final LongAdder documentCount = new LongAdder();
+  private final LongAdder byteCount = new LongAdder();
+  private final LongAdder bufferedBytes = new LongAdder();
+  private final LongAdder retryCount = new LongAdder();
+  private final LongAdder rejectionCount = new LongAdder();
+  private final LongAdder deadLetterCount = new LongAdder();
+  // Start times of the in-flight bulk requests by execution id.
+  private final Map<Long, Long> bulkStartNanos = new ConcurrentHashMap<>();
+  private final LongAdder inFlightRequestCount = new LongAdder();
+  private final Histogram bulkLatencyMillis = new Histogram();
+  private final Histogram serializationMicros = new Histogram();
+
+  private IndexingMetrics(String id, IndexingMetrics parent) {
+    this.id = id;
+    this.parent = parent;
+  }
+
+  /**
+   * @return metrics of all the writers of this JVM
+   */
+  public static IndexingMetrics getGlobal() {
+    return GLOBAL;
+  }
+
+  /**
+   * Creates metrics aggregated by the global metrics and registers them in JMX.
+   */
+  public static IndexingMetrics create(@NonNull String id) {
+    return create(id, GLOBAL);
+  }
+
+  /**
+   * Creates metrics aggregated by the {@code parent} and registers them in JMX.
+   */
+  public static IndexingMetrics create(@NonNull String id, @NonNull IndexingMetrics parent) {
+    val metrics = new IndexingMetrics(id, parent);
+    metrics.register();
+
+    return metrics;
+  }
+
+  public void recordDocument(long bytes) {
+    documentCount.increment();
+    byteCount.add(bytes);
+    if (parent != null) {
+      parent.recordDocument(bytes);
+    }
+  }
+
+  public void recordBufferedBytes(long bytes) {
+    bufferedBytes.add(bytes);
+    if (parent != null) {
+      parent.recordBufferedBytes(bytes);
+    }
+  }
+
+  public void recordSerialization(long nanos) {
+    serializationMicros.record(NANOSECONDS.toMicros(nanos));
+    if (parent != null) {
+      parent.recordSerialization(nanos);
+    }
+  }
+
+  public void startBulk(long executionId) {
+    bulkStartNanos.put(executionId, System.nanoTime());
+    inFlightRequestCount.increment();
+    if (parent != null) {
+      parent.inFlightRequestCount.increment();
+    }
+  }
+
+  public void finishBulk(long executionId) {
+    val start = bulkStartNanos.remove(executionId);
+    if (start == null) {
+      // Not started, e.g. the cluster state check failed
+      return;
+    }
+
+    recordBulk(System.nanoTime() - start);
+  }
+
+  public void recordRetries(int requests) {
+    retryCount.add(requests);
+    if (parent != null) {
+      parent.recordRetries(requests);
+    }
+  }
+
+  public void recordRejections(int requests) {
+    rejectionCount.add(requests);
+    if (parent != null) {
+      parent.recordRejections(requests);
+    }
+  }
+
+  public void recordDeadLetter() {
+    deadLetterCount.increment();
+    if (parent != null) {
+      parent.recordDeadLetter();
+    }
+  }
+
+  /**
+   * Removes the metrics from JMX. The values remain accounted in the {@code parent}.
+   */
+  public void unregister() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName(id));
+    } catch (JMException e) {
+      log.warn("[{}] Failed to unregister writer metrics: {}", id, e.getMessage());
+    }
+  }
+
+  @Override
+  public long getDocumentCount() {
+    return documentCount.sum();
+  }
+
+  @Override
+  public long getByteCount() {
+    return byteCount.sum();
+  }
+
+  @Override
+  public double getDocumentsPerSecond() {
+    return perSecond(getDocumentCount());
+  }
+
+  @Override
+  public double getBytesPerSecond() {
+    return perSecond(getByteCount());
+  }
+
+  @Override
+  public long getBufferedBytes() {
+    return bufferedBytes.sum();
+  }
+
+  @Override
+  public long getBulkRequestCount() {
+    return bulkLatencyMillis.getCount();
+  }
+
+  @Override
+  public int getInFlightRequestCount() {
+    return inFlightRequestCount.intValue();
+  }
+
+  @Override
+  public double getBulkLatencyMeanMillis() {
+    return bulkLatencyMillis.getMean();
+  }
+
+  @Override
+  public long getBulkLatencyP50Millis() {
+    return bulkLatencyMillis.getPercentile(0.50);
+  }
+
+  @Override
+  public long getBulkLatencyP95Millis() {
+    return bulkLatencyMillis.getPercentile(0.95);
+  }
+
+  @Override
+  public long getBulkLatencyP99Millis() {
+    return bulkLatencyMillis.getPercentile(0.99);
+  }
+
+  @Override
+  public long getBulkLatencyMaxMillis() {
+    return bulkLatencyMillis.getMax();
+  }
+
+  @Override
+  public double getSerializationMeanMicros() {
+    return serializationMicros.getMean();
+  }
+
+  @Override
+  public long getSerializationP99Micros() {
+    return serializationMicros.getPercentile(0.99);
+  }
+
+  @Override
+  public long getSerializationMaxMicros() {
+    return serializationMicros.getMax();
+  }
+
+  @Override
+  public long getRetryCount() {
+    return retryCount.sum();
+  }
+
+  @Override
+  public long getRejectionCount() {
+    return rejectionCount.sum();
+  }
+
+  @Override
+  public long getDeadLetterCount() {
+    return deadLetterCount.sum();
+  }
+
+  private void recordBulk(long latencyNanos) {
+    inFlightRequestCount.decrement();
+    bulkLatencyMillis.record(NANOSECONDS.toMillis(latencyNanos));
+    if (parent != null) {
+      parent.recordBulk(latencyNanos);
+    }
+  }
+
+  private double perSecond(long value) {
+    val elapsedMicros = NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+
+    return elapsedMicros == 0 ? 0 : value * (double) SECONDS.toMicros(1) / elapsedMicros;
+  }
+
+  private void register() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, getObjectName(id));
+    } catch (JMException e) {
+      log.warn("[{}] Failed to register writer metrics: {}", id, e.getMessage());
+    }
+  }
+
+  private static IndexingMetrics createGlobal() {
+    val metrics = new IndexingMetrics("all", null);
+    metrics.register();
+
+    return metrics;
+  }
+
+  private static ObjectName getObjectName(String id) throws JMException {
+    return new ObjectName(String.format(OBJECT_NAME_FORMAT, ObjectName.quote(id)));
+  }
+
+}
@@ -18,8 +18,13 @@
 package org.icgc.dcc.dcc.common.es.impl;
 
 import static java.lang.String.format;
-import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.icgc.dcc.dcc.common.es.util.BulkProcessorConfiguration.DEFAULT_MAX_RETRIES;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -36,9 +41,11 @@ public class IndexingState {
   /**
    * Constants.
    */
-  private static final int MAX_FAILED_RETRIES = 10;
   private static final int MAX_CONSEQUENT_SUCCESSFUL_LOADS = 5;
-  private static final int MAX_PENDING_REQUESTS = 10;
+  private static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 1;
+  private static final int IN_FLIGHT_REQUEST_TIMEOUT_MINUTES = 15;
+  private static final int MAX_PENDING_RETRIES = 10;
+  private static final int PENDING_REQUESTS_TIMEOUT_MINUTES = 15;
 
   /**
    * State.
@@ -46,16 +53,33 @@ public class IndexingState {
   @Getter
   // Might be used for statistics later.
   private final AtomicInteger totalRetries = new AtomicInteger(0);
-  // A flag that indicates that a bulk load is in progress.
-  private final AtomicInteger pendingBulkRequest = new AtomicInteger(0);
+  // Execution ids of the bulk loads in progress.
+  private final Set<Long> pendingBulkRequests = ConcurrentHashMap.newKeySet();
+  // Failed requests handed off for re-indexing, but not yet added back to the processor.
+  private final AtomicInteger pendingRetries = new AtomicInteger(0);
+  // Notified when a pending request or retry completes.
+  private final Object pendingLock = new Object();
+  // Bounds the number of outstanding bulk requests. Blocks the producer when exhausted.
+  private final Semaphore inFlightRequests;
   private final AtomicInteger batchRetryCount = new AtomicInteger(0);
   private final AtomicBoolean checkClusterStateBeforeLoad = new AtomicBoolean();
   private final AtomicInteger consequentSuccessfulLoads = new AtomicInteger(0);
 
   private final String id;
+  private final int maxRetries;
 
   public IndexingState(String id) {
+    this(id, DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+  }
+
+  public IndexingState(String id, int maxInFlightRequests) {
+    this(id, maxInFlightRequests, DEFAULT_MAX_RETRIES);
+  }
+
+  public IndexingState(String id, int maxInFlightRequests, int maxRetries) {
     this.id = id;
+    this.inFlightRequests = new Semaphore(maxInFlightRequests);
+    this.maxRetries = maxRetries;
   }
 
   /**
@@ -70,11 +94,9 @@ public class IndexingState {
   }
 
   /**
-   * Cleans {@code pendingBulkRequest} and {@code batchErrorCount}.
+   * Cleans {@code batchRetryCount}.
    */
   public void resetIndexState() {
-    // TODO: check if we should decrement instead of resetting.
-    resetPendingRequests();
     resetRetries();
 
     // Still checking cluster state before each load?
@@ -116,22 +138,58 @@ public class IndexingState {
   }
 
   public int getPendingRequestsCount() {
-    return pendingBulkRequest.get();
+    return pendingBulkRequests.size() + pendingRetries.get();
   }
 
-  public void resetPendingRequests() {
-    pendingBulkRequest.set(0);
+  /**
+   * Registers bulk request {@code executionId} as in-flight. Blocks while the maximum number of in-flight requests is
+   * reached.
+   * 
+   * @throws ExhausedRetryException if no request completed in {@code IN_FLIGHT_REQUEST_TIMEOUT_MINUTES}
+   */
+  @SneakyThrows
+  public void startIndexing(long executionId) {
+    if (!inFlightRequests.tryAcquire(IN_FLIGHT_REQUEST_TIMEOUT_MINUTES, MINUTES)) {
+      log.error("[{}] Tired of waiting for one of {} pending requests to complete after {} mins. Exiting...",
+          id, getPendingRequestsCount(), IN_FLIGHT_REQUEST_TIMEOUT_MINUTES);
+      throw new ExhausedRetryException();
+    }
+
+    pendingBulkRequests.add(executionId);
   }
 
-  public void startIndexing() {
-    val pendingRequestsCount = getPendingRequestsCount();
-    if (pendingRequestsCount >= MAX_PENDING_REQUESTS) {
-      log.error("[{}] Pending requests count {} exceeds the maximum allowed pending requests number {}. Exiting...",
-          id, pendingRequestsCount, MAX_PENDING_REQUESTS);
-      throw new ExhausedRetryException();
+  /**
+   * Marks bulk request {@code executionId} as completed. Ignores requests that were not started, e.g. when
+   * {@link #startIndexing(long)} failed.
+   */
+  public void finishIndexing(long executionId) {
+    if (pendingBulkRequests.remove(executionId)) {
+      inFlightRequests.release();
+      signalPendingChange();
     }
+  }
+
+  public void startRetry() {
+    pendingRetries.incrementAndGet();
+  }
 
-    pendingBulkRequest.incrementAndGet();
+  public void finishRetry() {
+    pendingRetries.decrementAndGet();
+    signalPendingChange();
+  }
+
+  /**
+   * Blocks the producer while {@code MAX_PENDING_RETRIES} retries are waiting to be re-submitted, so failed requests
+   * don't pile up while the cluster is overloaded.
+   */
+  @SneakyThrows
+  public void awaitRetryCapacity() {
+    synchronized (pendingLock) {
+      while (pendingRetries.get() >= MAX_PENDING_RETRIES) {
+        log.debug("[{}] {} retries are pending. Waiting...", id, pendingRetries.get());
+        pendingLock.wait();
+      }
+    }
   }
 
   public void incrementRetries() {
@@ -147,7 +205,7 @@ public class IndexingState {
   }
 
   public boolean canRetryIndexing() {
-    return batchRetryCount.get() < MAX_FAILED_RETRIES;
+    return batchRetryCount.get() < maxRetries;
   }
 
   @Override
@@ -155,26 +213,37 @@ public class IndexingState {
     return format("Pending requests: %s, indexing retries: %s", getPendingRequestsCount(), getRetries());
   }
 
+  /**
+   * Blocks until all the pending requests and retries are completed, but no more than
+   * {@code PENDING_REQUESTS_TIMEOUT_MINUTES}. Wakes up on each completion instead of polling.
+   * 
+   * @throws ExhausedRetryException
+   */
   @SneakyThrows
   public void waitForPendingRequests() {
-    val timeoutSeconds = 5;
-    val requestsPerMinute = 60 / timeoutSeconds;
-
-    // Wait for 15 minutes before fail
-    val pendingRequestTimeoutMins = 15;
-    int retriesLeft = requestsPerMinute * pendingRequestTimeoutMins;
-    while (hasPendingRequests()) {
-      log.info("[{}] The processor has {} pending requests. Waiting for 5 secs...", id,
-          getPendingRequestsCount());
-      SECONDS.sleep(timeoutSeconds);
-
-      retriesLeft--;
-      if (retriesLeft <= 0) {
-        log.error("Tired of waiting for the pending requests after {} mins. Killing myself...",
-            pendingRequestTimeoutMins);
-        throw new ExhausedRetryException();
+    val deadline = System.nanoTime() + MINUTES.toNanos(PENDING_REQUESTS_TIMEOUT_MINUTES);
+    synchronized (pendingLock) {
+      while (hasPendingRequests()) {
+        val remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+          log.error("Tired of waiting for the pending requests after {} mins. Killing myself...",
+              PENDING_REQUESTS_TIMEOUT_MINUTES);
+          throw new ExhausedRetryException();
+        }
+
+        log.info("[{}] The processor has {} pending requests. Waiting...", id, getPendingRequestsCount());
+        NANOSECONDS.timedWait(pendingLock, remainingNanos);
       }
     }
   }
 
+  /**
+   * Wakes up the threads waiting for pending requests or retries to complete.
+   */
+  private void signalPendingChange() {
+    synchronized (pendingLock) {
+      pendingLock.notifyAll();
+    }
+  }
+
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.elasticsearch.action.DocWriteRequest;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Tracks the latest write of each document until it completes. Failed writes are re-added after a backoff delay, so a
+ * retry must be dropped once a later write of the same document was added, otherwise the stale version would overwrite
+ * the later one.
+ * <p>
+ * Not used if retries are disabled.
+ */
+public class LatestWrites {
+
+  /**
+   * State.
+   */
+  // Latest incomplete write by document. Requests are compared by identity.
+  private final Map<Key, DocWriteRequest<?>> writes = new ConcurrentHashMap<>();
+
+  /**
+   * Registers {@code request} as the latest write of its document. Must be called before adding it to the processor.
+   */
+  public void add(@NonNull DocWriteRequest<?> request) {
+    writes.put(getKey(request), request);
+  }
+
+  /**
+   * @return {@code true} if a later write of the same document was added after {@code request}
+   */
+  public boolean isSuperseded(@NonNull DocWriteRequest<?> request) {
+    return writes.get(getKey(request)) != request;
+  }
+
+  /**
+   * Forgets {@code request} once it's indexed or finally failed, unless it was superseded.
+   */
+  public void complete(@NonNull DocWriteRequest<?> request) {
+    writes.remove(getKey(request), request);
+  }
+
+  public int size() {
+    return writes.size();
+  }
+
+  private static Key getKey(DocWriteRequest<?> request) {
+    return new Key(request.index(), request.type(), request.id());
+  }
+
+  /**
+   * References the fields of the request rather than concatenating them.
+   */
+  @Value
+  private static class Key {
+
+    String index;
+    String type;
+    String id;
+
+  }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.SneakyThrows;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounds the bytes of document sources held by all the writers of the JVM, from being added to a bulk processor until
+ * they are indexed or finally failed. Producers are blocked while the budget is exhausted and the writer holding the
+ * most bytes is flushed meanwhile, so its documents could be released. Unlimited by default.
+ */
+@Slf4j
+public class MemoryBudget {
+
+  /**
+   * Constants.
+   */
+  private static final MemoryBudget GLOBAL = new MemoryBudget();
+  private static final long WAIT_MILLIS = 100;
+
+  /**
+   * State.
+   */
+  private final Set<Account> accounts = ConcurrentHashMap.newKeySet();
+  // Guarded by this
+  private long limitBytes = Long.MAX_VALUE;
+  private long usedBytes;
+
+  /**
+   * @return budget shared by all the writers of this JVM
+   */
+  public static MemoryBudget getGlobal() {
+    return GLOBAL;
+  }
+
+  /**
+   * @return bytes of the {@code request} accounted by the budget
+   */
+  public static long sizeOf(@NonNull DocWriteRequest<?> request) {
+    return request instanceof IndexRequest ? ((IndexRequest) request).source().length() : 0;
+  }
+
+  public synchronized void setLimitBytes(long limitBytes) {
+    checkArgument(limitBytes > 0, "Memory budget must be positive: %s", limitBytes);
+    log.info("Setting writers memory budget to {} bytes", limitBytes);
+    this.limitBytes = limitBytes;
+    notifyAll();
+  }
+
+  public synchronized long getLimitBytes() {
+    return limitBytes;
+  }
+
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  public Account register(@NonNull String writerId, @NonNull IndexingMetrics metrics) {
+    val account = new Account(writerId, metrics);
+    accounts.add(account);
+
+    return account;
+  }
+
+  /**
+   * Waits until {@code bytes} fit into the budget. A document larger than the whole budget is admitted once nothing
+   * else is held.
+   */
+  @SneakyThrows
+  private void acquire(Account account, long bytes) {
+    while (true) {
+      Account largest;
+      synchronized (this) {
+        if (usedBytes == 0 || usedBytes + bytes <= limitBytes) {
+          usedBytes += bytes;
+          return;
+        }
+
+        largest = getLargestAccount();
+      }
+
+      // Outside of the lock, as the flush might complete a bulk request and release its bytes on this thread
+      if (largest != null) {
+        log.debug("[{}] Memory budget is exhausted. Flushing writer '{}'...", account.writerId, largest.writerId);
+        largest.flush();
+      }
+
+      synchronized (this) {
+        if (usedBytes != 0 && usedBytes + bytes > limitBytes) {
+          wait(WAIT_MILLIS);
+        }
+      }
+    }
+  }
+
+  private synchronized void release(long bytes) {
+    usedBytes -= bytes;
+    notifyAll();
+  }
+
+  private Account getLargestAccount() {
+    Account largest = null;
+    for (val account : accounts) {
+      if (account.closed) {
+        continue;
+      }
+
+      if (largest == null || account.getUsedBytes() > largest.getUsedBytes()) {
+        largest = account;
+      }
+    }
+
+    return largest;
+  }
+
+  /**
+   * Bytes held by a single writer. Once closed, the bytes of the requests still completing are not released again.
+   */
+  @RequiredArgsConstructor
+  public class Account {
+
+    private final String writerId;
+    private final IndexingMetrics metrics;
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    /**
+     * Sends the buffered documents of the writer.
+     */
+    @Setter
+    private volatile Runnable flusher;
+    // Changed under the lock of the account, so bytes are released either by the account or by its close
+    private volatile boolean closed;
+
+    public long getUsedBytes() {
+      return usedBytes.get();
+    }
+
+    public void acquire(long bytes) {
+      MemoryBudget.this.acquire(this, bytes);
+      synchronized (this) {
+        if (closed) {
+          // Nothing would release them otherwise
+          MemoryBudget.this.release(bytes);
+          throw new IllegalStateException("Memory account of writer '" + writerId + "' is closed");
+        }
+
+        usedBytes.addAndGet(bytes);
+      }
+
+      metrics.recordBufferedBytes(bytes);
+    }
+
+    public void release(long bytes) {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+
+        usedBytes.addAndGet(-bytes);
+        MemoryBudget.this.release(bytes);
+      }
+
+      metrics.recordBufferedBytes(-bytes);
+    }
+
+    /**
+     * Releases the bytes still held, e.g. by requests abandoned after exhausted retries.
+     */
+    public void close() {
+      long bytes;
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+
+        closed = true;
+        accounts.remove(this);
+        bytes = usedBytes.getAndSet(0);
+        MemoryBudget.this.release(bytes);
+      }
+
+      metrics.recordBufferedBytes(-bytes);
+    }
+
+    /**
+     * Flushes the writer unless closed. The writer might be closed concurrently, in which case there is nothing left to
+     * flush.
+     */
+    private void flush() {
+      val flusher = this.flusher;
+      if (closed || flusher == null) {
+        return;
+      }
+
+      try {
+        flusher.run();
+      } catch (IllegalStateException e) {
+        log.debug("Writer '{}' is already closed: {}", writerId, e.getMessage());
+      }
+    }
+
+  }
+
+}
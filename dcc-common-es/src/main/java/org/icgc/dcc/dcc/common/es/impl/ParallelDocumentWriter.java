@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.propagate;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.icgc.dcc.common.core.util.stream.Collectors.toImmutableList;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.elasticsearch.client.Client;
+import org.icgc.dcc.dcc.common.es.core.DocumentWriter;
+import org.icgc.dcc.dcc.common.es.core.DocumentWriterMetrics;
+import org.icgc.dcc.dcc.common.es.core.ExhausedRetryException;
+import org.icgc.dcc.dcc.common.es.model.IndexDocument;
+import org.icgc.dcc.dcc.common.es.model.StreamingIndexDocument;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link DocumentWriter} which distributes {@link IndexDocument}s across several {@link DefaultDocumentWriter}s. Each
+ * of them serializes documents on its own thread and has its own {@code BulkProcessor}.
+ * <p>
+ * Documents are assigned to the writers by their {@code id}, or by the routing key derived from it, so writes of the
+ * same document are always performed in order. When shard aware, the {@code id} is first resolved to the primary shard
+ * of the index, so bulk requests of a writer only target its own shards.
+ * <p>
+ * Fails fast: once a document fails to be written, subsequent writes are rejected with the failure. The documents
+ * still queued for any of the writers at that moment are dropped, while the documents already added to the bulk
+ * processors are flushed on {@link #close()}. The number of dropped documents is logged.
+ */
+@Slf4j
+public class ParallelDocumentWriter implements DocumentWriter {
+
+  /**
+   * Constants.
+   */
+  private static final int QUEUE_CAPACITY = 1000;
+  private static final long POLL_TIMEOUT_MILLIS = 100;
+  private static final int CLOSE_TIMEOUT_MINUTES = 30;
+
+  /**
+   * Writers.
+   */
+  private final List<Shard> shards;
+  private final ExecutorService executor;
+
+  // Shared by all the writers. Closed once all of them are finished.
+  private final Client client;
+  // Aggregates the metrics of all the writers.
+  private final IndexingMetrics metrics;
+  // Shared by all the writers. Released once all of them are finished. Null if disabled.
+  private final BulkLoadMode bulkLoadMode;
+  // Null if documents are assigned by their id hash code.
+  private final ShardRouter shardRouter;
+  // Null if documents are assigned by their id.
+  private final Function<String, String> routingKey;
+
+  /**
+   * State.
+   */
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  // Queued documents dropped after the failure.
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  public ParallelDocumentWriter(@NonNull List<DocumentWriterContext> contexts) {
+    checkArgument(!contexts.isEmpty(), "At least one writer context is required");
+    this.client = contexts.get(0).getClient();
+    this.metrics = contexts.get(0).getMetrics().getParent();
+    this.bulkLoadMode = contexts.get(0).getBulkLoadMode();
+    this.shardRouter = contexts.get(0).getShardRouter();
+    this.routingKey = contexts.get(0).getRoutingKey();
+    this.shards = contexts.stream()
+        .map(context -> new Shard(new DefaultDocumentWriter(context)))
+        .collect(toImmutableList());
+
+    val threadFactory = new ThreadFactoryBuilder()
+        .setNameFormat("es-parallel-writer-%d")
+        .build();
+    this.executor = newFixedThreadPool(shards.size(), threadFactory);
+    shards.forEach(executor::execute);
+    log.info("Created ES parallel document writer with {} writers.", shards.size());
+    if (shardRouter != null && shardRouter.getNumberOfShards() % shards.size() != 0) {
+      log.warn("{} primary shards are not evenly distributed across {} writers", shardRouter.getNumberOfShards(),
+          shards.size());
+    }
+  }
+
+  @Override
+  public void write(@NonNull IndexDocument document) throws IOException {
+    checkFailure();
+    getShard(document.getId()).add(writer -> writer.write(document));
+  }
+
+  @Override
+  public void write(@NonNull StreamingIndexDocument document) throws IOException {
+    checkFailure();
+    getShard(document.getId()).add(writer -> writer.write(document));
+  }
+
+  @Override
+  public DocumentWriterMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  @SneakyThrows
+  public void close() throws IOException {
+    log.info("Closing {} writers...", shards.size());
+    shards.forEach(Shard::finish);
+    executor.shutdown();
+
+    RuntimeException closeFailure = null;
+    try {
+      if (!executor.awaitTermination(CLOSE_TIMEOUT_MINUTES, MINUTES)) {
+        log.error("Tired of waiting for the writers to finish after {} mins. Exiting...", CLOSE_TIMEOUT_MINUTES);
+        // Stops the writers still running, so their processors can be closed
+        executor.shutdownNow();
+        closeFailure = new ExhausedRetryException();
+      }
+    } finally {
+      try {
+        closeFailure = closeWriters(closeFailure);
+      } finally {
+        try {
+          if (bulkLoadMode != null) {
+            bulkLoadMode.release(client);
+          }
+        } finally {
+          metrics.unregister();
+          client.close();
+        }
+      }
+    }
+
+    if (closeFailure != null) {
+      throw closeFailure;
+    }
+
+    if (droppedCount.get() > 0) {
+      log.error("Dropped {} queued documents after the failure", droppedCount.get());
+    }
+
+    checkFailure();
+  }
+
+  /**
+   * Closes all the writers even if some of them fail.
+   * 
+   * @return {@code failure} with the failures of the writers added as suppressed, or the first of them if {@code null}
+   */
+  private RuntimeException closeWriters(RuntimeException failure) {
+    for (val shard : shards) {
+      try {
+        shard.writer.closeProcessor();
+      } catch (RuntimeException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+
+    return failure;
+  }
+
+  private Shard getShard(String id) {
+    val hash = shardRouter != null ? shardRouter.getShardId(id) : getRoutingKey(id).hashCode();
+
+    return shards.get(Math.floorMod(hash, shards.size()));
+  }
+
+  private String getRoutingKey(String id) {
+    return routingKey == null ? id : routingKey.apply(id);
+  }
+
+  private void checkFailure() {
+    val throwable = failure.get();
+    if (throwable != null) {
+      throw propagate(throwable);
+    }
+  }
+
+  @FunctionalInterface
+  private interface Write {
+
+    void apply(DefaultDocumentWriter writer) throws IOException;
+
+  }
+
+  @RequiredArgsConstructor
+  private class Shard implements Runnable {
+
+    @NonNull
+    private final DefaultDocumentWriter writer;
+    private final BlockingQueue<Write> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private volatile boolean finished;
+
+    /**
+     * Blocks while the queue is full, but rejects the write as soon as any of the writers failed.
+     */
+    @SneakyThrows
+    public void add(Write write) {
+      while (!queue.offer(write, POLL_TIMEOUT_MILLIS, MILLISECONDS)) {
+        checkFailure();
+      }
+    }
+
+    public void finish() {
+      finished = true;
+    }
+
+    @Override
+    @SneakyThrows
+    public void run() {
+      while (!finished || !queue.isEmpty()) {
+        val write = queue.poll(POLL_TIMEOUT_MILLIS, MILLISECONDS);
+        if (write != null) {
+          write(write);
+        }
+      }
+    }
+
+    private void write(Write write) {
+      // Keep draining the queue after a failure, so the writers finish promptly
+      if (failure.get() != null) {
+        droppedCount.incrementAndGet();
+        return;
+      }
+
+      try {
+        write.apply(writer);
+      } catch (Throwable t) {
+        log.error("Failed to write document: ", t);
+        failure.compareAndSet(null, t);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static lombok.AccessLevel.PRIVATE;
+import static org.elasticsearch.rest.RestStatus.REQUEST_TIMEOUT;
+import static org.elasticsearch.rest.RestStatus.TOO_MANY_REQUESTS;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.bulk.BulkItemResponse.Failure;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+/**
+ * Classifies bulk failures and calculates exponential backoff delays with jitter for the retries.
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class RetryPolicy {
+
+  /**
+   * Constants.
+   */
+  private static final long MAX_DELAY_MILLIS = 60_000;
+  private static final int MAX_EXPONENT = 16;
+
+  @RequiredArgsConstructor
+  public enum FailureType {
+
+    /**
+     * The cluster is overloaded (HTTP 429). Backs off longer to let it recover.
+     */
+    REJECTED(2_000),
+
+    /**
+     * Timeouts, unavailable shards etc.
+     */
+    TRANSIENT(500),
+
+    /**
+     * Mapping errors and other bad requests which will fail again.
+     */
+    NON_RETRYABLE(0);
+
+    private final long baseDelayMillis;
+
+  }
+
+  public static FailureType getFailureType(@NonNull Failure failure) {
+    val status = failure.getStatus();
+    if (status == TOO_MANY_REQUESTS || isRejection(failure.getCause())) {
+      return FailureType.REJECTED;
+    }
+
+    // Client errors other than timeouts are caused by the request itself
+    val code = status.getStatus();
+    if (code >= 400 && code < 500 && status != REQUEST_TIMEOUT) {
+      return FailureType.NON_RETRYABLE;
+    }
+
+    return FailureType.TRANSIENT;
+  }
+
+  public static FailureType getFailureType(@NonNull Throwable failure) {
+    return isRejection(failure) ? FailureType.REJECTED : FailureType.TRANSIENT;
+  }
+
+  /**
+   * @param attempt number of consequent failed attempts, starting from {@code 1}
+   * @return delay in {@code [backoff / 2, backoff]}, where {@code backoff} grows exponentially with the
+   * {@code attempt}, but no more than {@code MAX_DELAY_MILLIS}
+   */
+  public static long getDelayMillis(@NonNull FailureType type, int attempt) {
+    int exponent = Math.min(Math.max(attempt - 1, 0), MAX_EXPONENT);
+    long backoff = Math.min(MAX_DELAY_MILLIS, type.baseDelayMillis << exponent);
+    long half = backoff / 2;
+
+    return half + ThreadLocalRandom.current().nextLong(half + 1);
+  }
+
+  private static boolean isRejection(Throwable failure) {
+    return failure != null && ExceptionsHelper.unwrapCause(failure) instanceof EsRejectedExecutionException;
+  }
+
+}
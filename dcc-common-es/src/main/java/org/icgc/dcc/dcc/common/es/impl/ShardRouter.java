@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.routing.Murmur3HashFunction;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resolves the primary shard of the index a document is routed to. Mirrors the default routing of Elasticsearch for
+ * documents without an explicit {@code routing}, i.e. the murmur3 hash of the document {@code id}.
+ */
+@Slf4j
+public class ShardRouter {
+
+  /**
+   * Configuration.
+   */
+  @Getter
+  private final int numberOfShards;
+  private final int routingNumShards;
+  private final int routingFactor;
+
+  public ShardRouter(@NonNull Client client, @NonNull String indexName) {
+    val state = client.admin().cluster().prepareState()
+        .setIndices(indexName)
+        .setMetaData(true)
+        .setRoutingTable(false)
+        .setNodes(false)
+        .get()
+        .getState();
+    val indexMetaData = state.getMetaData().index(indexName);
+    checkState(indexMetaData != null, "Index '%s' does not exist. Shard aware writes require an existing index",
+        indexName);
+
+    this.numberOfShards = indexMetaData.getNumberOfShards();
+    // Shrunk indices route documents by the shards count of the original index
+    this.routingNumShards = indexMetaData.getRoutingNumShards();
+    this.routingFactor = indexMetaData.getRoutingFactor();
+    log.info("[{}] Routing documents to {} primary shards", indexName, numberOfShards);
+  }
+
+  public int getShardId(@NonNull String id) {
+    val hash = Murmur3HashFunction.hash(id);
+
+    return Math.floorMod(hash, routingNumShards) / routingFactor;
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.icgc.dcc.dcc.common.es.json.JacksonFactory;
+import org.icgc.dcc.dcc.common.es.model.SourceGenerator;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Serializes document sources to SMILE directly into the buffer which is handed over to the {@link IndexRequest},
+ * without an intermediate {@code byte[]} copy. The buffer is referenced by the request until the bulk completes, so it
+ * is not reused.
+ * <p>
+ * Not thread safe.
+ */
+public class SourceSerializer {
+
+  /**
+   * Constants.
+   */
+  private static final ObjectWriter BINARY_WRITER = JacksonFactory.getObjectWriter();
+  private static final JsonFactory SMILE_FACTORY = BINARY_WRITER.getFactory();
+  private static final int DEFAULT_EXPECTED_SOURCE_SIZE = 1024;
+  /**
+   * Caps the pre-sized serialization buffer, which is held until the bulk completes, so a single huge document doesn't
+   * inflate the buffers of the following ones. Larger sources grow the buffer page by page.
+   */
+  private static final int MAX_EXPECTED_SOURCE_SIZE = 64 * 1024;
+
+  /**
+   * State.
+   */
+  // Moving average of the source sizes, capped to MAX_EXPECTED_SOURCE_SIZE. Used to pre-size the serialization buffer.
+  private int expectedSourceSize = DEFAULT_EXPECTED_SOURCE_SIZE;
+
+  public BytesReference serialize(@NonNull ObjectNode document) throws IOException {
+    return serialize(generator -> BINARY_WRITER.writeValue(generator, document));
+  }
+
+  public BytesReference serialize(@NonNull SourceGenerator sourceGenerator) throws IOException {
+    val output = new BytesStreamOutput(expectedSourceSize);
+    try (JsonGenerator generator =
+        SMILE_FACTORY.createGenerator(output).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+      sourceGenerator.generate(generator);
+    }
+
+    val source = output.bytes();
+    expectedSourceSize = (int) Math.min(MAX_EXPECTED_SOURCE_SIZE, (7L * expectedSourceSize + source.length()) / 8);
+
+    return source;
+  }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.model;
+
+import java.io.IOException;
+
+import org.icgc.dcc.dcc.common.es.impl.IndexDocumentType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import lombok.NonNull;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * {@link IndexDocument} alternative which generates its source while being written, so large documents never have to
+ * be materialized as an {@code ObjectNode}.
+ */
+@Value
+public class StreamingIndexDocument {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @NonNull
+  String id;
+  @NonNull
+  SourceGenerator source;
+  @NonNull
+  IndexDocumentType type;
+
+  /**
+   * Materializes the generated source, for writers which don't support streaming.
+   */
+  public IndexDocument toIndexDocument() throws IOException {
+    val buffer = new TokenBuffer(MAPPER, false);
+    source.generate(buffer);
+    ObjectNode node = MAPPER.readTree(buffer.asParser());
+
+    return new IndexDocument(id, node, type);
+  }
+
+}
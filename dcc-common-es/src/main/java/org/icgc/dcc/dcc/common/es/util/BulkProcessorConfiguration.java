@@ -17,11 +17,13 @@
  */
 package org.icgc.dcc.dcc.common.es.util;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.isNull;
 import static lombok.AccessLevel.PRIVATE;
 import static org.elasticsearch.common.unit.ByteSizeUnit.MB;
 
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 
 import lombok.NoArgsConstructor;
 
@@ -30,6 +32,10 @@ public final class BulkProcessorConfiguration {
 
   public static final int DEFAULT_BULK_SIZE_MB = 36;
   public static final ByteSizeValue DEFAULT_BULK_SIZE = new ByteSizeValue(DEFAULT_BULK_SIZE_MB, MB);
+  public static final int DEFAULT_CONCURRENT_REQUESTS = 0;
+  public static final int DEFAULT_BULK_ACTIONS = -1; // Unlimited
+  public static final int DEFAULT_TARGET_BULK_LATENCY_MS = 2000;
+  public static final int DEFAULT_MAX_RETRIES = 10;
 
   public static ByteSizeValue getBulkSize(Integer bulkSizeMb) {
     int bulkSizeValue = isNull(bulkSizeMb) ? DEFAULT_BULK_SIZE_MB : bulkSizeMb;
@@ -41,4 +47,55 @@ public final class BulkProcessorConfiguration {
     return bulkSizeMb == DEFAULT_BULK_SIZE_MB ? DEFAULT_BULK_SIZE : new ByteSizeValue(bulkSizeMb, MB);
   }
 
+  public static int getConcurrentRequests(Integer concurrentRequests) {
+    int value = isNull(concurrentRequests) ? DEFAULT_CONCURRENT_REQUESTS : concurrentRequests;
+    checkArgument(value >= 0, "Concurrent requests must be non-negative: %s", value);
+
+    return value;
+  }
+
+  /**
+   * Resolves the in-flight requests limit. By default one request can be prepared while {@code concurrentRequests} are
+   * executing.
+   */
+  public static int getMaxInFlightRequests(Integer maxInFlightRequests, int concurrentRequests) {
+    int value = isNull(maxInFlightRequests) ? concurrentRequests + 1 : maxInFlightRequests;
+    checkArgument(value > 0, "Max in-flight requests must be positive: %s", value);
+
+    return value;
+  }
+
+  public static int getMaxRetries(Integer maxRetries) {
+    int value = isNull(maxRetries) ? DEFAULT_MAX_RETRIES : maxRetries;
+    checkArgument(value >= 0, "Max retries must be non-negative: %s", value);
+
+    return value;
+  }
+
+  public static int getBulkActions(Integer bulkActions) {
+    int value = isNull(bulkActions) ? DEFAULT_BULK_ACTIONS : bulkActions;
+    checkArgument(value == -1 || value > 0, "Bulk actions must be positive or -1 (unlimited): %s", value);
+
+    return value;
+  }
+
+  /**
+   * @return {@code null} if time based flushing is disabled
+   */
+  public static TimeValue getFlushInterval(Integer flushIntervalSeconds) {
+    if (isNull(flushIntervalSeconds)) {
+      return null;
+    }
+
+    checkArgument(flushIntervalSeconds > 0, "Flush interval must be positive: %s", flushIntervalSeconds);
+    return TimeValue.timeValueSeconds(flushIntervalSeconds);
+  }
+
+  public static TimeValue getTargetBulkLatency(Integer targetBulkLatencyMs) {
+    int value = isNull(targetBulkLatencyMs) ? DEFAULT_TARGET_BULK_LATENCY_MS : targetBulkLatencyMs;
+    checkArgument(value > 0, "Target bulk latency must be positive: %s", value);
+
+    return TimeValue.timeValueMillis(value);
+  }
+
 }
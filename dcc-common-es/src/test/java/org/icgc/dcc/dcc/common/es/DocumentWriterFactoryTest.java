@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.elasticsearch.cluster.health.ClusterHealthStatus.RED;
+import static org.icgc.dcc.common.core.json.Jackson.DEFAULT;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.icgc.dcc.dcc.common.es.core.AsyncDocumentWriter;
+import org.icgc.dcc.dcc.common.es.core.DocumentWriter;
+import org.icgc.dcc.dcc.common.es.core.DocumentWriterMetrics;
+import org.icgc.dcc.dcc.common.es.impl.ClusterHealthMonitor;
+import org.icgc.dcc.dcc.common.es.impl.IndexDocumentType;
+import org.icgc.dcc.dcc.common.es.load.SimulatedClient;
+import org.icgc.dcc.dcc.common.es.load.SimulatedClient.Behaviour;
+import org.icgc.dcc.dcc.common.es.model.IndexDocument;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+
+import lombok.val;
+
+public class DocumentWriterFactoryTest {
+
+  private static final String INDEX_NAME = "test";
+  private static final IndexDocumentType TYPE = () -> "donor";
+  private static final int DOCUMENT_COUNT = 100;
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void testCreateDocumentWriter() throws IOException {
+    val client = createClient(new Behaviour());
+    DocumentWriterMetrics metrics;
+    try (DocumentWriter writer = DocumentWriterFactory.createDocumentWriter(createConfiguration(client))) {
+      metrics = writer.getMetrics();
+      writeDocuments(writer);
+    }
+
+    assertThat(client.getItemCount()).isEqualTo(DOCUMENT_COUNT);
+    assertThat(metrics.getDocumentCount()).isEqualTo(DOCUMENT_COUNT);
+    assertThat(metrics.getDeadLetterCount()).isZero();
+  }
+
+  @Test
+  public void testCreateAsyncDocumentWriter() throws IOException {
+    val client = createClient(new Behaviour());
+    List<CompletableFuture<BulkItemResponse>> acknowledgements = Lists.newArrayList();
+    try (AsyncDocumentWriter writer = DocumentWriterFactory.createAsyncDocumentWriter(createConfiguration(client))) {
+      for (int i = 0; i < DOCUMENT_COUNT; i++) {
+        acknowledgements.add(writer.writeAsync(createDocument(i)));
+      }
+    }
+
+    assertThat(acknowledgements).allMatch(acknowledgement -> !acknowledgement.join().isFailed());
+    assertThat(client.getItemCount()).isEqualTo(DOCUMENT_COUNT);
+  }
+
+  @Test
+  public void testCreateDocumentWriterDeadLetters() throws IOException {
+    val client = createClient(new Behaviour().nonRetryableFailureRate(1));
+    Set<String> deadLetters = ConcurrentHashMap.newKeySet();
+    val configuration = createConfiguration(client)
+        .deadLetterSink((request, failure) -> deadLetters.add(request.id()));
+
+    DocumentWriterMetrics metrics;
+    try (DocumentWriter writer = DocumentWriterFactory.createDocumentWriter(configuration)) {
+      metrics = writer.getMetrics();
+      writeDocuments(writer);
+    }
+
+    assertThat(deadLetters).hasSize(DOCUMENT_COUNT);
+    assertThat(metrics.getDeadLetterCount()).isEqualTo(DOCUMENT_COUNT);
+    assertThat(metrics.getRetryCount()).isZero();
+  }
+
+  @Test
+  public void testCreateDocumentWriterWithoutRetries() throws IOException {
+    val client = createClient(new Behaviour().transientFailureRate(1));
+    Set<String> deadLetters = ConcurrentHashMap.newKeySet();
+    val configuration = createConfiguration(client)
+        .maxRetries(0)
+        .deadLetterSink((request, failure) -> deadLetters.add(request.id()));
+
+    DocumentWriterMetrics metrics;
+    try (DocumentWriter writer = DocumentWriterFactory.createDocumentWriter(configuration)) {
+      metrics = writer.getMetrics();
+      writeDocuments(writer);
+    }
+
+    // Transient failures are dead-lettered right away
+    assertThat(deadLetters).hasSize(DOCUMENT_COUNT);
+    assertThat(client.getItemCount()).isEqualTo(DOCUMENT_COUNT);
+    assertThat(metrics.getRetryCount()).isZero();
+  }
+
+  @Test
+  public void testCreateDocumentWriterOfMissingIndex() throws Exception {
+    val client = createClient(new Behaviour().missingIndex(true));
+    val spoolDir = tmp.newFolder("spool");
+    val configuration = createConfiguration(client)
+        .spoolDir(spoolDir.getAbsolutePath());
+
+    try (DocumentWriter writer = DocumentWriterFactory.createDocumentWriter(configuration)) {
+      awaitMissingIndex(client);
+      writeDocuments(writer);
+    }
+
+    // Not spooled, as the first bulk request creates the index
+    assertThat(client.getItemCount()).isEqualTo(DOCUMENT_COUNT);
+    assertThat(spoolDir.list((dir, name) -> name.endsWith(".spool"))).isEmpty();
+  }
+
+  @Test
+  public void testCreateParallelDocumentWriter() throws IOException {
+    val client = createClient(new Behaviour());
+    val configuration = createConfiguration(client)
+        .parallelism(4)
+        .routingKey(id -> String.valueOf(Integer.parseInt(id) % 10));
+
+    DocumentWriterMetrics metrics;
+    try (DocumentWriter writer = DocumentWriterFactory.createParallelDocumentWriter(configuration)) {
+      metrics = writer.getMetrics();
+      writeDocuments(writer);
+    }
+
+    assertThat(client.getItemCount()).isEqualTo(DOCUMENT_COUNT);
+    assertThat(metrics.getDocumentCount()).isEqualTo(DOCUMENT_COUNT);
+  }
+
+  private static SimulatedClient createClient(Behaviour behaviour) {
+    return new SimulatedClient(behaviour.latencyMedianMillis(5).latencySigma(0));
+  }
+
+  /**
+   * Waits until the health monitor of the writer observed the missing index.
+   */
+  private static void awaitMissingIndex(SimulatedClient client) throws InterruptedException {
+    val monitor = ClusterHealthMonitor.acquire(client, INDEX_NAME);
+    try {
+      for (int i = 0; i < 50 && monitor.getStatus() == null; i++) {
+        Thread.sleep(100);
+      }
+
+      assertThat(monitor.getStatus()).isEqualTo(RED);
+      assertThat(monitor.isUnavailable()).isFalse();
+    } finally {
+      monitor.release();
+    }
+  }
+
+  private static DocumentWriterConfiguration createConfiguration(SimulatedClient client) {
+    return new DocumentWriterConfiguration()
+        .client(client)
+        .indexName(INDEX_NAME)
+        .bulkActions(10);
+  }
+
+  private static void writeDocuments(DocumentWriter writer) throws IOException {
+    for (int i = 0; i < DOCUMENT_COUNT; i++) {
+      writer.write(createDocument(i));
+    }
+  }
+
+  private static IndexDocument createDocument(int i) {
+    val source = DEFAULT.createObjectNode();
+    source.put("_donor_id", "DO" + i);
+
+    return new IndexDocument(String.valueOf(i), source, TYPE);
+  }
+
+}
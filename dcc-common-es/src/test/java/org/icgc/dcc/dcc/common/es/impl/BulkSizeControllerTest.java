@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.elasticsearch.common.unit.ByteSizeUnit.MB;
+
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Test;
+
+import lombok.val;
+
+public class BulkSizeControllerTest {
+
+  private static final ByteSizeValue MAX_BULK_SIZE = new ByteSizeValue(16, MB);
+  private static final TimeValue TARGET_LATENCY = TimeValue.timeValueMillis(1000);
+
+  @Test
+  public void testUpdate() {
+    val controller = new BulkSizeController(MAX_BULK_SIZE, true, TARGET_LATENCY);
+
+    controller.update(TimeValue.timeValueMillis(2000));
+    assertThat(controller.getBulkSizeBytes()).isEqualTo(MAX_BULK_SIZE.getBytes() * 3 / 4);
+
+    // Not grown past the maximum
+    controller.update(TimeValue.timeValueMillis(100));
+    controller.update(TimeValue.timeValueMillis(100));
+    assertThat(controller.getBulkSizeBytes()).isEqualTo(MAX_BULK_SIZE.getBytes());
+  }
+
+  @Test
+  public void testReject() {
+    val controller = new BulkSizeController(MAX_BULK_SIZE, true, TARGET_LATENCY);
+
+    controller.reject();
+    assertThat(controller.getBulkSizeBytes()).isEqualTo(MAX_BULK_SIZE.getBytes() / 2);
+
+    // Not shrunk below the minimum
+    for (int i = 0; i < 10; i++) {
+      controller.reject();
+    }
+
+    assertThat(controller.getBulkSizeBytes()).isEqualTo(new ByteSizeValue(1, MB).getBytes());
+  }
+
+  @Test
+  public void testFail() {
+    val controller = new BulkSizeController(MAX_BULK_SIZE, true, TARGET_LATENCY);
+
+    controller.fail();
+    assertThat(controller.getBulkSizeBytes()).isEqualTo(MAX_BULK_SIZE.getBytes() * 3 / 4);
+  }
+
+  @Test
+  public void testNotAdaptive() {
+    val controller = new BulkSizeController(MAX_BULK_SIZE, false, TARGET_LATENCY);
+
+    controller.reject();
+    controller.fail();
+    controller.update(TimeValue.timeValueMillis(2000));
+    assertThat(controller.getBulkSizeBytes()).isEqualTo(MAX_BULK_SIZE.getBytes());
+  }
+
+}
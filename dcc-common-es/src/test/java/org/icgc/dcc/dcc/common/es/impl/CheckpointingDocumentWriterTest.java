@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.icgc.dcc.common.core.json.Jackson.DEFAULT;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse.Failure;
+import org.icgc.dcc.dcc.common.es.core.AsyncDocumentWriter;
+import org.icgc.dcc.dcc.common.es.model.IndexDocument;
+import org.icgc.dcc.dcc.common.es.model.StreamingIndexDocument;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+
+import lombok.val;
+
+public class CheckpointingDocumentWriterTest {
+
+  private static final IndexDocumentType TYPE = () -> "donor";
+  private static final int CHECKPOINT_INTERVAL_SECONDS = 60;
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Path checkpointFile;
+  PendingDocumentWriter delegate;
+
+  @Before
+  public void setUp() throws IOException {
+    this.checkpointFile = tmp.getRoot().toPath().resolve("checkpoint");
+    this.delegate = new PendingDocumentWriter();
+  }
+
+  @Test
+  public void testDeleteCheckpointOnceFinished() throws IOException {
+    try (val writer = createWriter(CHECKPOINT_INTERVAL_SECONDS)) {
+      assertThat(writer.getCheckpoint()).isEqualTo(OptionalLong.empty());
+      for (int offset = 0; offset < 3; offset++) {
+        writer.write(createDocument(offset), offset);
+      }
+
+      delegate.acknowledge(0, 1, 2);
+    }
+
+    assertThat(checkpointFile.toFile()).doesNotExist();
+  }
+
+  @Test
+  public void testCheckpointStopsAtPendingDocument() throws IOException {
+    try (val writer = createWriter(CHECKPOINT_INTERVAL_SECONDS)) {
+      for (int offset = 0; offset < 3; offset++) {
+        writer.write(createDocument(offset), offset);
+      }
+
+      // Acknowledged out of order
+      delegate.acknowledge(0, 2);
+    }
+
+    assertCheckpoint(0);
+  }
+
+  @Test
+  public void testCheckpointWaitsForAllDocumentsOfOffset() throws IOException {
+    try (val writer = createWriter(CHECKPOINT_INTERVAL_SECONDS)) {
+      writer.write(createDocument(0), 0);
+      writer.write(createDocument(1), 1);
+      writer.write(createDocument(2), 1);
+      writer.write(createDocument(3), 2);
+
+      delegate.acknowledge(0, 1, 3);
+    }
+
+    assertCheckpoint(0);
+  }
+
+  @Test
+  public void testFreezeCheckpointOnFailure() throws IOException {
+    try (val writer = createWriter(CHECKPOINT_INTERVAL_SECONDS)) {
+      writer.write(createDocument(0), 0);
+      writer.write(createDocument(1), 1);
+      writer.write(createDocument(2), 2);
+
+      delegate.acknowledge(0, 2);
+      delegate.acknowledgements.get(1).completeExceptionally(new IOException("Failed"));
+
+      // Not tracked anymore, so the checkpoint can't pass the failed document
+      writer.write(createDocument(3), 3);
+      delegate.acknowledge(3);
+    }
+
+    assertCheckpoint(0);
+  }
+
+  @Test
+  public void testFreezeCheckpointOnDeadLetter() throws IOException {
+    try (val writer = createWriter(CHECKPOINT_INTERVAL_SECONDS)) {
+      writer.write(createDocument(0), 0);
+      writer.write(createDocument(1), 1);
+      writer.write(createDocument(2), 2);
+
+      // Dead-lettered documents complete normally with a failed response
+      delegate.acknowledge(0, 2);
+      val failure = new Failure("test", "donor", "1", new ElasticsearchException("Failed"));
+      delegate.acknowledgements.get(1).complete(new BulkItemResponse(1, OpType.INDEX, failure));
+
+      writer.write(createDocument(3), 3);
+      delegate.acknowledge(3);
+    }
+
+    assertCheckpoint(0);
+  }
+
+  @Test
+  public void testResumeFromPreviousCheckpoint() throws IOException {
+    Files.write(checkpointFile, "41".getBytes(UTF_8));
+
+    try (val writer = createWriter(CHECKPOINT_INTERVAL_SECONDS)) {
+      assertThat(writer.getCheckpoint()).isEqualTo(OptionalLong.of(41));
+      writer.write(createDocument(42), 42);
+    }
+
+    // Nothing acknowledged yet by the new session
+    assertCheckpoint(41);
+
+    try (val writer = createWriter(CHECKPOINT_INTERVAL_SECONDS)) {
+      writer.write(createDocument(42), 42);
+      delegate.acknowledge(1);
+    }
+
+    assertThat(checkpointFile.toFile()).doesNotExist();
+  }
+
+  @Test
+  public void testSaveCheckpointPeriodically() throws Exception {
+    try (val writer = createWriter(1)) {
+      writer.write(createDocument(0), 0);
+      writer.write(createDocument(1), 1);
+      delegate.acknowledge(0);
+
+      for (int i = 0; i < 50 && !Files.exists(checkpointFile); i++) {
+        Thread.sleep(100);
+      }
+
+      assertCheckpoint(0);
+      delegate.acknowledge(1);
+    }
+  }
+
+  @Test
+  public void testOffsetsMustNotDecrease() throws IOException {
+    try (val writer = createWriter(CHECKPOINT_INTERVAL_SECONDS)) {
+      writer.write(createDocument(0), 1);
+
+      try {
+        writer.write(createDocument(1), 0);
+        throw new AssertionError("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        assertThat(e.getMessage()).contains("0 < 1");
+      }
+
+      delegate.acknowledge(0);
+    }
+  }
+
+  private CheckpointingDocumentWriter createWriter(int checkpointIntervalSeconds) {
+    return new CheckpointingDocumentWriter(delegate, checkpointFile, checkpointIntervalSeconds);
+  }
+
+  private void assertCheckpoint(long checkpoint) throws IOException {
+    assertThat(checkpointFile.toFile()).exists();
+    assertThat(new String(Files.readAllBytes(checkpointFile), UTF_8)).isEqualTo(String.valueOf(checkpoint));
+  }
+
+  private static IndexDocument createDocument(int i) {
+    return new IndexDocument(String.valueOf(i), DEFAULT.createObjectNode().put("_donor_id", "DO" + i), TYPE);
+  }
+
+  /**
+   * Acknowledges the documents only when told by the test.
+   */
+  private static class PendingDocumentWriter implements AsyncDocumentWriter {
+
+    private final List<CompletableFuture<BulkItemResponse>> acknowledgements = Lists.newArrayList();
+
+    @Override
+    public CompletableFuture<BulkItemResponse> writeAsync(IndexDocument document) {
+      val acknowledgement = new CompletableFuture<BulkItemResponse>();
+      acknowledgements.add(acknowledgement);
+
+      return acknowledgement;
+    }
+
+    @Override
+    public CompletableFuture<BulkItemResponse> writeAsync(StreamingIndexDocument document) {
+      val acknowledgement = new CompletableFuture<BulkItemResponse>();
+      acknowledgements.add(acknowledgement);
+
+      return acknowledgement;
+    }
+
+    @Override
+    public void write(IndexDocument document) {
+      writeAsync(document);
+    }
+
+    @Override
+    public void close() {
+      // Nothing to flush
+    }
+
+    private void acknowledge(int... documents) {
+      for (val document : documents) {
+        acknowledgements.get(document).complete(null);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.icgc.dcc.dcc.common.es.impl.DocumentSpool.NO_SEQUENCE;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+
+import lombok.Value;
+import lombok.val;
+
+public class DocumentSpoolTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Path dir;
+
+  @Before
+  public void setUp() throws IOException {
+    this.dir = tmp.newFolder().toPath().resolve("spool");
+  }
+
+  @Test
+  public void testReplayInAppendOrder() throws IOException {
+    try (val spool = new DocumentSpool(dir)) {
+      assertThat(spool.isEmpty()).isTrue();
+      assertThat(spool.peekSegment()).isNull();
+
+      spool.append("index1", "1", "donor", 0, source("a"));
+      spool.append("index2", "2", "gene", NO_SEQUENCE, source("b"));
+      spool.append("index1", "3", "donor", 1, source("c"));
+      assertThat(spool.isEmpty()).isFalse();
+
+      val segment = spool.peekSegment();
+      assertThat(replay(spool, segment)).containsExactly(
+          new Record("index1", "1", "donor", 0, "a"),
+          new Record("index2", "2", "gene", NO_SEQUENCE, "b"),
+          new Record("index1", "3", "donor", 1, "c"));
+
+      // Stays in the spool until removed
+      assertThat(spool.peekSegment()).isEqualTo(segment);
+      spool.remove(segment);
+      assertThat(spool.isEmpty()).isTrue();
+      assertThat(segment.toFile()).doesNotExist();
+    }
+  }
+
+  @Test
+  public void testAppendAfterPeekStartsNewSegment() throws IOException {
+    try (val spool = new DocumentSpool(dir)) {
+      spool.append("index", "1", "donor", 0, source("a"));
+      val first = spool.peekSegment();
+      spool.append("index", "2", "donor", 1, source("b"));
+
+      assertThat(spool.peekSegment()).isEqualTo(first);
+      spool.remove(first);
+
+      val second = spool.peekSegment();
+      assertThat(second).isNotEqualTo(first);
+      assertThat(replay(spool, second)).containsExactly(new Record("index", "2", "donor", 1, "b"));
+    }
+  }
+
+  @Test
+  public void testReplaySegmentsOfPreviousWriter() throws IOException {
+    try (val spool = new DocumentSpool(dir)) {
+      spool.append("index", "1", "donor", 5, source("a"));
+    }
+
+    try (val spool = new DocumentSpool(dir)) {
+      assertThat(spool.isEmpty()).isFalse();
+      spool.append("index", "2", "donor", 0, source("b"));
+
+      // Sequences of the previous writer are meaningless to this one
+      val previous = spool.peekSegment();
+      assertThat(replay(spool, previous)).containsExactly(new Record("index", "1", "donor", NO_SEQUENCE, "a"));
+      spool.remove(previous);
+
+      val current = spool.peekSegment();
+      assertThat(replay(spool, current)).containsExactly(new Record("index", "2", "donor", 0, "b"));
+      spool.remove(current);
+      assertThat(spool.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void testSkipTruncatedRecord() throws IOException {
+    try (val spool = new DocumentSpool(dir)) {
+      spool.append("index", "1", "donor", 0, source("a"));
+      spool.append("index", "2", "donor", 1, source("b"));
+    }
+
+    Path segment;
+    try (val spool = new DocumentSpool(dir)) {
+      segment = spool.peekSegment();
+    }
+
+    try (val channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 1);
+    }
+
+    try (val spool = new DocumentSpool(dir)) {
+      assertThat(replay(spool, spool.peekSegment())).containsExactly(
+          new Record("index", "1", "donor", NO_SEQUENCE, "a"));
+    }
+  }
+
+  @Test
+  public void testDirectoryIsLocked() throws IOException {
+    try (val spool = new DocumentSpool(dir)) {
+      try {
+        new DocumentSpool(dir).close();
+        throw new AssertionError("Expected IOException");
+      } catch (IOException e) {
+        assertThat(e.getMessage()).contains("used by another writer");
+      }
+    }
+
+    // Released on close
+    new DocumentSpool(dir).close();
+  }
+
+  private static BytesArray source(String value) {
+    return new BytesArray(value.getBytes(UTF_8));
+  }
+
+  private static List<Record> replay(DocumentSpool spool, Path segment) throws IOException {
+    List<Record> records = Lists.newArrayList();
+    spool.replay(segment, (index, id, type, sequence, source) -> records.add(
+        new Record(index, id, type, sequence, source.utf8ToString())));
+
+    return records;
+  }
+
+  @Value
+  private static class Record {
+
+    String index;
+    String id;
+    String type;
+    long sequence;
+    String source;
+
+  }
+
+}
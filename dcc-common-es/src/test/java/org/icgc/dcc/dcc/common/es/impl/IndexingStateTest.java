@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.icgc.dcc.dcc.common.es.core.ExhausedRetryException;
+import org.junit.Test;
+
+import lombok.SneakyThrows;
+import lombok.val;
+
+public class IndexingStateTest {
+
+  private static final long BLOCKED_MILLIS = 200;
+
+  @Test
+  public void testStartIndexingBlocksWhileInFlightRequestsExhausted() {
+    val state = new IndexingState("test", 2);
+    state.startIndexing(1);
+    state.startIndexing(2);
+
+    val blocked = runAsync(() -> state.startIndexing(3));
+    assertBlocked(blocked);
+    assertThat(state.getPendingRequestsCount()).isEqualTo(2);
+
+    state.finishIndexing(1);
+    await(blocked);
+    assertThat(state.getPendingRequestsCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testFinishIndexingIgnoresUnknownRequests() {
+    val state = new IndexingState("test", 1);
+
+    // Must not release a permit of a request that was never started
+    state.finishIndexing(1);
+    state.startIndexing(2);
+
+    val blocked = runAsync(() -> state.startIndexing(3));
+    assertBlocked(blocked);
+
+    state.finishIndexing(2);
+    await(blocked);
+  }
+
+  @Test
+  public void testWaitForPendingRequests() {
+    val state = new IndexingState("test");
+    state.startIndexing(1);
+    state.startRetry();
+
+    val waiting = runAsync(state::waitForPendingRequests);
+    state.finishIndexing(1);
+    assertBlocked(waiting);
+
+    state.finishRetry();
+    await(waiting);
+    assertThat(state.hasPendingRequests()).isFalse();
+  }
+
+  @Test
+  public void testAwaitRetryCapacity() {
+    val state = new IndexingState("test");
+    for (int i = 0; i < 10; i++) {
+      state.startRetry();
+    }
+
+    val blocked = runAsync(state::awaitRetryCapacity);
+    assertBlocked(blocked);
+
+    state.finishRetry();
+    await(blocked);
+  }
+
+  @Test
+  public void testRetriesExhausted() {
+    val state = new IndexingState("test");
+    for (int i = 0; i < 10; i++) {
+      assertThat(state.canRetryIndexing()).isTrue();
+      state.incrementRetries();
+    }
+
+    assertThat(state.canRetryIndexing()).isFalse();
+    try {
+      state.checkRetryFailed();
+      throw new AssertionError("Expected ExhausedRetryException");
+    } catch (ExhausedRetryException e) {
+      // Expected
+    }
+
+    state.resetIndexState();
+    assertThat(state.canRetryIndexing()).isTrue();
+  }
+
+  @SneakyThrows
+  private static void assertBlocked(CompletableFuture<Void> future) {
+    Thread.sleep(BLOCKED_MILLIS);
+    assertThat(future.isDone()).isFalse();
+  }
+
+  @SneakyThrows
+  private static void await(CompletableFuture<Void> future) {
+    future.get(5, SECONDS);
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Test;
+
+import lombok.val;
+
+public class LatestWritesTest {
+
+  @Test
+  public void testLaterWriteSupersedesRetry() {
+    val latestWrites = new LatestWrites();
+    val first = createRequest("1");
+    val second = createRequest("1");
+
+    latestWrites.add(first);
+    assertThat(latestWrites.isSuperseded(first)).isFalse();
+
+    // The retry of the first write must be dropped from now on
+    latestWrites.add(second);
+    assertThat(latestWrites.isSuperseded(first)).isTrue();
+    assertThat(latestWrites.isSuperseded(second)).isFalse();
+
+    // Completing the stale write keeps the later one
+    latestWrites.complete(first);
+    assertThat(latestWrites.size()).isEqualTo(1);
+    assertThat(latestWrites.isSuperseded(second)).isFalse();
+
+    latestWrites.complete(second);
+    assertThat(latestWrites.size()).isZero();
+  }
+
+  @Test
+  public void testWritesOfDifferentDocuments() {
+    val latestWrites = new LatestWrites();
+    val first = createRequest("1");
+    val second = createRequest("2");
+    val otherType = new IndexRequest("test", "mutation", "1");
+
+    latestWrites.add(first);
+    latestWrites.add(second);
+    latestWrites.add(otherType);
+
+    assertThat(latestWrites.isSuperseded(first)).isFalse();
+    assertThat(latestWrites.isSuperseded(second)).isFalse();
+    assertThat(latestWrites.isSuperseded(otherType)).isFalse();
+    assertThat(latestWrites.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void testEqualRequestsAreComparedByIdentity() {
+    val latestWrites = new LatestWrites();
+    val first = createRequest("1");
+
+    latestWrites.add(first);
+    latestWrites.add(createRequest("1"));
+
+    assertThat(latestWrites.isSuperseded(first)).isTrue();
+  }
+
+  private static IndexRequest createRequest(String id) {
+    return new IndexRequest("test", "donor", id);
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.impl;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import lombok.val;
+
+public class MemoryBudgetTest {
+
+  private static final long BLOCKED_MILLIS = 200;
+
+  MemoryBudget budget;
+  IndexingMetrics metrics;
+
+  @Before
+  public void setUp() {
+    this.budget = new MemoryBudget();
+    this.metrics = IndexingMetrics.create("memory-budget-test");
+  }
+
+  @After
+  public void tearDown() {
+    metrics.unregister();
+  }
+
+  @Test
+  public void testAcquireAndRelease() {
+    val account = budget.register("writer", metrics);
+    account.acquire(30);
+    account.acquire(20);
+    assertThat(account.getUsedBytes()).isEqualTo(50);
+    assertThat(budget.getUsedBytes()).isEqualTo(50);
+
+    account.release(30);
+    assertThat(account.getUsedBytes()).isEqualTo(20);
+    assertThat(budget.getUsedBytes()).isEqualTo(20);
+  }
+
+  @Test
+  public void testCloseReleasesRemainingBytes() {
+    val account = budget.register("writer", metrics);
+    account.acquire(50);
+    account.close();
+    assertThat(account.getUsedBytes()).isZero();
+    assertThat(budget.getUsedBytes()).isZero();
+
+    // Requests completing after the close must not release their bytes again
+    account.release(50);
+    assertThat(budget.getUsedBytes()).isZero();
+    account.close();
+    assertThat(budget.getUsedBytes()).isZero();
+  }
+
+  @Test
+  public void testAcquireAfterClose() {
+    val account = budget.register("writer", metrics);
+    account.close();
+
+    try {
+      account.acquire(50);
+      throw new AssertionError("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).contains("writer");
+    }
+
+    assertThat(budget.getUsedBytes()).isZero();
+  }
+
+  @Test
+  public void testAcquireBlocksWhileBudgetExhausted() throws Exception {
+    budget.setLimitBytes(100);
+    val account1 = budget.register("writer1", metrics);
+    val account2 = budget.register("writer2", metrics);
+    val flushes = new AtomicInteger();
+    account1.setFlusher(flushes::incrementAndGet);
+    account1.acquire(80);
+
+    val blocked = runAsync(() -> account2.acquire(50));
+    Thread.sleep(BLOCKED_MILLIS);
+    assertThat(blocked.isDone()).isFalse();
+
+    // The writer holding the most bytes is flushed meanwhile
+    assertThat(flushes.get()).isPositive();
+
+    account1.release(80);
+    blocked.get(5, SECONDS);
+    assertThat(account2.getUsedBytes()).isEqualTo(50);
+    assertThat(budget.getUsedBytes()).isEqualTo(50);
+  }
+
+  @Test
+  public void testAcquireDocumentLargerThanBudget() {
+    budget.setLimitBytes(100);
+    val account = budget.register("writer", metrics);
+
+    // Admitted once nothing else is held
+    account.acquire(150);
+    assertThat(budget.getUsedBytes()).isEqualTo(150);
+  }
+
+  @Test
+  public void testClosedAccountIsNotFlushed() throws Exception {
+    budget.setLimitBytes(100);
+    val account1 = budget.register("writer1", metrics);
+    val account2 = budget.register("writer2", metrics);
+    val flushes = new AtomicInteger();
+    account1.setFlusher(flushes::incrementAndGet);
+    account1.acquire(80);
+    account2.acquire(10);
+    account1.close();
+
+    // Fits again, since the closed account released its bytes
+    account2.acquire(50);
+    assertThat(flushes.get()).isZero();
+    assertThat(budget.getUsedBytes()).isEqualTo(60);
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.load;
+
+import static org.icgc.dcc.common.core.json.Jackson.DEFAULT;
+import static org.icgc.dcc.common.core.util.Formats.formatCount;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.icgc.dcc.dcc.common.es.DocumentWriterConfiguration;
+import org.icgc.dcc.dcc.common.es.DocumentWriterFactory;
+import org.icgc.dcc.dcc.common.es.core.DocumentWriter;
+import org.icgc.dcc.dcc.common.es.core.DocumentWriterMetrics;
+import org.icgc.dcc.dcc.common.es.impl.IndexDocumentType;
+import org.icgc.dcc.dcc.common.es.model.IndexDocument;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
+
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pushes synthetic documents through a {@link DocumentWriter} backed by a {@link SimulatedClient} and reports the
+ * throughput, bulk latencies and retries. Allows tuning the writer without a cluster.
+ * <p>
+ * Usage: {@code DocumentWriterLoadTester [documents] [parallelism] [rejectionRate] [transientFailureRate]
+ * [nonRetryableFailureRate] [latencyMedianMillis] [healthPeriodSeconds] [redSeconds]}. A parallelism of {@code 0}
+ * uses a single writer.
+ */
+@Slf4j
+public class DocumentWriterLoadTester {
+
+  /**
+   * Constants.
+   */
+  private static final String INDEX_NAME = "load-test";
+  private static final IndexDocumentType TYPE = () -> "donor";
+  private static final int PAYLOAD_SIZE = 1024;
+
+  public static void main(String... args) throws Exception {
+    val documents = Long.parseLong(arg(args, 0, "1000000"));
+    val parallelism = Integer.parseInt(arg(args, 1, "0"));
+    val behaviour = new SimulatedClient.Behaviour()
+        .rejectionRate(Double.parseDouble(arg(args, 2, "0")))
+        .transientFailureRate(Double.parseDouble(arg(args, 3, "0")))
+        .nonRetryableFailureRate(Double.parseDouble(arg(args, 4, "0")))
+        .latencyMedianMillis(Long.parseLong(arg(args, 5, "100")))
+        .healthPeriodSeconds(Long.parseLong(arg(args, 6, "0")))
+        .redSeconds(Long.parseLong(arg(args, 7, "0")));
+    log.info("Writing {} documents to {}", formatCount(documents), behaviour);
+
+    val client = new SimulatedClient(behaviour);
+    val deadLetters = new AtomicLong();
+    val configuration = new DocumentWriterConfiguration()
+        .client(client)
+        .indexName(INDEX_NAME)
+        .parallelism(parallelism)
+        .deadLetterSink((request, failure) -> deadLetters.incrementAndGet());
+
+    val watch = Stopwatch.createStarted();
+    DocumentWriterMetrics metrics;
+    try (DocumentWriter writer = createWriter(configuration, parallelism)) {
+      metrics = writer.getMetrics();
+      for (long i = 0; i < documents; i++) {
+        writer.write(new IndexDocument(String.valueOf(i), createSource(i), TYPE));
+      }
+    }
+
+    val seconds = watch.elapsed(TimeUnit.MILLISECONDS) / 1000.0;
+    log.info("Wrote {} documents in {} s: {} docs/s, {} MB/s", formatCount(metrics.getDocumentCount()), seconds,
+        Math.round(metrics.getDocumentCount() / seconds), metrics.getByteCount() / seconds / (1024 * 1024));
+    log.info("Bulk requests: {}, latency mean: {} ms, p50: {} ms, p95: {} ms, p99: {} ms, max: {} ms",
+        metrics.getBulkRequestCount(), metrics.getBulkLatencyMeanMillis(), metrics.getBulkLatencyP50Millis(),
+        metrics.getBulkLatencyP95Millis(), metrics.getBulkLatencyP99Millis(), metrics.getBulkLatencyMaxMillis());
+    log.info("Serialization mean: {} us, p99: {} us, max: {} us", metrics.getSerializationMeanMicros(),
+        metrics.getSerializationP99Micros(), metrics.getSerializationMaxMicros());
+    log.info("Retries: {}, rejections: {}, dead letters: {} (sink received {})", metrics.getRetryCount(),
+        metrics.getRejectionCount(), metrics.getDeadLetterCount(), deadLetters.get());
+    log.info("Simulated bulks: {}, items: {}, rejected: {}, transient failures: {}, non-retryable failures: {}",
+        client.getBulkCount(), client.getItemCount(), client.getRejectedCount(), client.getTransientFailureCount(),
+        client.getNonRetryableFailureCount());
+  }
+
+  private static DocumentWriter createWriter(DocumentWriterConfiguration configuration, int parallelism) {
+    return parallelism > 0 ?
+        DocumentWriterFactory.createParallelDocumentWriter(configuration) :
+        DocumentWriterFactory.createDocumentWriter(configuration);
+  }
+
+  private static ObjectNode createSource(long i) {
+    val source = DEFAULT.createObjectNode();
+    source.put("_donor_id", "DO" + i);
+    source.put("project", "PRJ-" + i % 50);
+    source.put("payload", Strings.repeat("x", PAYLOAD_SIZE));
+
+    return source;
+  }
+
+  private static String arg(String[] args, int i, String defaultValue) {
+    return args.length > i ? args[i] : defaultValue;
+  }
+
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.dcc.common.es.load;
+
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.elasticsearch.cluster.health.ClusterHealthStatus.GREEN;
+import static org.elasticsearch.cluster.health.ClusterHealthStatus.RED;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthAction;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsAction;
+import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
+import org.elasticsearch.action.bulk.BulkAction;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse.Failure;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.support.AbstractClient;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.mapper.MapperParsingException;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.Data;
+import lombok.NonNull;
+import lombok.val;
+import lombok.experimental.Accessors;
+
+/**
+ * In-process stand-in for an Elasticsearch {@code Client} which accepts bulk, cluster health and indices exists
+ * requests only. Bulk responses are delayed by a log-normally distributed latency and fail items at random according to
+ * the {@link Behaviour}.
+ */
+public class SimulatedClient extends AbstractClient {
+
+  /**
+   * Constants.
+   */
+  private static final String CLUSTER_NAME = "simulated";
+  private static final String INDEX_UUID = "_na_";
+
+  /**
+   * Configuration.
+   */
+  private final Behaviour behaviour;
+
+  /**
+   * Dependencies.
+   */
+  private final ScheduledExecutorService responder;
+
+  /**
+   * State.
+   */
+  private final long startTime = System.nanoTime();
+  private final AtomicLong bulkCount = new AtomicLong();
+  private final AtomicLong itemCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private final AtomicLong transientFailureCount = new AtomicLong();
+  private final AtomicLong nonRetryableFailureCount = new AtomicLong();
+  private volatile boolean indexCreated;
+
+  @Data
+  @Accessors(fluent = true)
+  public static class Behaviour {
+
+    /**
+     * Latency of a bulk request.
+     */
+    long latencyMedianMillis = 100;
+    double latencySigma = 0.5;
+
+    /**
+     * Probabilities of an item to fail.
+     */
+    double rejectionRate;
+    double transientFailureRate;
+    double nonRetryableFailureRate;
+
+    /**
+     * The cluster is RED for the first {@code redSeconds} of each {@code healthPeriodSeconds}, starting from the
+     * second period. Always GREEN if {@code 0}.
+     */
+    long healthPeriodSeconds;
+    long redSeconds;
+
+    /**
+     * The index doesn't exist until the first bulk request creates it. The cluster is RED meanwhile.
+     */
+    boolean missingIndex;
+
+  }
+
+  public SimulatedClient(@NonNull Behaviour behaviour) {
+    super(Settings.EMPTY, createThreadPool());
+    this.behaviour = behaviour;
+    this.responder = newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("es-simulated-responder-%d")
+        .setDaemon(true)
+        .build());
+  }
+
+  public long getBulkCount() {
+    return bulkCount.get();
+  }
+
+  public long getItemCount() {
+    return itemCount.get();
+  }
+
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  public long getTransientFailureCount() {
+    return transientFailureCount.get();
+  }
+
+  public long getNonRetryableFailureCount() {
+    return nonRetryableFailureCount.get();
+  }
+
+  @Override
+  public void close() {
+    responder.shutdownNow();
+    ThreadPool.terminate(threadPool(), 10, SECONDS);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected <Request extends ActionRequest, Response extends ActionResponse,
+      RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>> void doExecute(
+          Action<Request, Response, RequestBuilder> action, Request request, ActionListener<Response> listener) {
+    if (action == BulkAction.INSTANCE) {
+      val bulkRequest = (BulkRequest) request;
+      val latency = getLatencyMillis();
+      responder.schedule(() -> listener.onResponse((Response) bulk(bulkRequest, latency)), latency, MILLISECONDS);
+    } else if (action == ClusterHealthAction.INSTANCE) {
+      listener.onResponse((Response) health());
+    } else if (action == IndicesExistsAction.INSTANCE) {
+      listener.onResponse((Response) new IndicesExistsResponse(isIndexExists()));
+    } else {
+      listener.onFailure(new UnsupportedOperationException("Action is not simulated: " + action.name()));
+    }
+  }
+
+  private BulkResponse bulk(BulkRequest request, long tookMillis) {
+    bulkCount.incrementAndGet();
+    indexCreated = true;
+    List<DocWriteRequest<?>> requests = request.requests();
+    val responses = new BulkItemResponse[requests.size()];
+    for (int i = 0; i < responses.length; i++) {
+      responses[i] = respond(i, requests.get(i));
+    }
+
+    itemCount.addAndGet(responses.length);
+
+    return new BulkResponse(responses, tookMillis);
+  }
+
+  private BulkItemResponse respond(int i, DocWriteRequest<?> request) {
+    val random = ThreadLocalRandom.current().nextDouble();
+    double threshold = behaviour.rejectionRate();
+    if (random < threshold) {
+      rejectedCount.incrementAndGet();
+      return failure(i, request, new EsRejectedExecutionException("Simulated rejection"));
+    }
+
+    threshold += behaviour.transientFailureRate();
+    if (random < threshold) {
+      transientFailureCount.incrementAndGet();
+      return failure(i, request, new ElasticsearchException("Simulated transient failure"));
+    }
+
+    threshold += behaviour.nonRetryableFailureRate();
+    if (random < threshold) {
+      nonRetryableFailureCount.incrementAndGet();
+      return failure(i, request, new MapperParsingException("Simulated mapping failure"));
+    }
+
+    val shardId = new ShardId(request.index(), INDEX_UUID, 0);
+    val response = new IndexResponse(shardId, request.type(), request.id(), i, 1, true);
+
+    return new BulkItemResponse(i, request.opType(), response);
+  }
+
+  private static BulkItemResponse failure(int i, DocWriteRequest<?> request, Exception cause) {
+    val failure = new Failure(request.index(), request.type(), request.id(), cause);
+
+    return new BulkItemResponse(i, request.opType(), failure);
+  }
+
+  private ClusterHealthResponse health() {
+    val state = ClusterState.builder(ClusterName.DEFAULT).build();
+    val response = new ClusterHealthResponse(CLUSTER_NAME, Strings.EMPTY_ARRAY, state);
+    response.setStatus(getStatus());
+
+    return response;
+  }
+
+  private boolean isIndexExists() {
+    return !behaviour.missingIndex() || indexCreated;
+  }
+
+  private ClusterHealthStatus getStatus() {
+    if (!isIndexExists()) {
+      return RED;
+    }
+
+    val period = behaviour.healthPeriodSeconds();
+    if (period == 0) {
+      return GREEN;
+    }
+
+    val elapsedSeconds = (System.nanoTime() - startTime) / 1_000_000_000;
+    val red = elapsedSeconds >= period && elapsedSeconds % period < behaviour.redSeconds();
+
+    return red ? RED : GREEN;
+  }
+
+  private long getLatencyMillis() {
+    val gaussian = ThreadLocalRandom.current().nextGaussian();
+
+    return Math.round(behaviour.latencyMedianMillis() * Math.exp(behaviour.latencySigma() * gaussian));
+  }
+
+  private static ThreadPool createThreadPool() {
+    return new ThreadPool(Settings.builder().put(Node.NODE_NAME_SETTING.getKey(), CLUSTER_NAME).build());
+  }
+
+}
@@ -25,7 +25,6 @@ import static org.icgc.dcc.common.hadoop.parser.FileParsers.newStringFileParser;
 
 import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.PrintWriter;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
@@ -39,7 +38,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.compress.CompressionCodecFactory;
 import org.icgc.dcc.common.hadoop.parser.FileRecordProcessor;
 
 import com.google.common.collect.Lists;
@@ -53,11 +51,6 @@ import com.google.common.collect.Lists;
 @NoArgsConstructor(access = PRIVATE)
 public class FileOperations {
 
-  /**
-   * Constants.
-   */
-  private static final int KB = 1024;
-
   /**
    * Merge files, assumes that a header line exists on all input files
    */
@@ -160,15 +153,8 @@ public class FileOperations {
   }
 
   public static DataInputStream getDataInputStream(FileSystem fileSystem, Path file) {
-    // Config
-    val bufferSize = 8 * KB;
-    val factory = new CompressionCodecFactory(fileSystem.getConf());
-
     try {
-      val codec = factory.getCodec(file);
-      InputStream inputStream =
-          (codec == null) ? fileSystem.open(file) : codec.createInputStream(fileSystem.open(file, bufferSize));
-      return new DataInputStream(inputStream);
+      return new DataInputStream(FileStreams.open(fileSystem, file));
     } catch (IOException e) {
       throw new RuntimeException("Error reading: '" + file.toString() + "'", e);
     }
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.common.hadoop.fs;
+
+import static lombok.AccessLevel.PRIVATE;
+import static org.icgc.dcc.common.hadoop.fs.HadoopUtils.getLocalFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.val;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Opens file input streams, decompressing them based on their extension.
+ * <p>
+ * Codec factories are cached per {@link Configuration} and decompressors are borrowed from the {@link CodecPool} and
+ * returned when the stream is closed, so opening many small compressed files doesn't allocate native decompressors
+ * for each. Local uncompressed files are memory mapped only if requested by {@link #openMapped(FileSystem, Path)}.
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class FileStreams {
+
+  /**
+   * Constants.
+   */
+  private static final int KB = 1024;
+  /**
+   * Read buffer size of compressed files. Larger than the Hadoop default of {@code io.file.buffer.size} since each
+   * read is inflated into several times as many bytes.
+   */
+  private static final int COMPRESSED_BUFFER_SIZE = 64 * KB;
+  private static final int MAX_CODEC_FACTORIES = 16;
+
+  /**
+   * State.
+   * <p>
+   * Weak keys are compared by identity, since {@link Configuration} doesn't override {@code equals}. The cache is
+   * bounded because the codecs of a factory hold a reference to its {@link Configuration}, so the keys are never only
+   * weakly reachable.
+   */
+  private static final LoadingCache<Configuration, CompressionCodecFactory> CODEC_FACTORIES = CacheBuilder.newBuilder()
+      .weakKeys()
+      .maximumSize(MAX_CODEC_FACTORIES)
+      .build(CacheLoader.from(CompressionCodecFactory::new));
+
+  public static InputStream open(@NonNull FileSystem fileSystem, @NonNull Path path) throws IOException {
+    return open(fileSystem, path, getCodec(fileSystem, path));
+  }
+
+  /**
+   * Opens {@code path} like {@link #open(FileSystem, Path)}, but memory maps local uncompressed files. Faster for large
+   * files read sequentially, though it bypasses the {@code .crc} checksum verification of the local file system.
+   */
+  public static InputStream openMapped(@NonNull FileSystem fileSystem, @NonNull Path path) throws IOException {
+    val codec = getCodec(fileSystem, path);
+    if (codec == null) {
+      val localFile = getLocalFile(fileSystem, path);
+      if (localFile.isPresent()) {
+        return new MappedFileInputStream(localFile.get());
+      }
+    }
+
+    return open(fileSystem, path, codec);
+  }
+
+  /**
+   * Opens {@code path} with an explicit {@code codec}, or without decompression if it is {@code null}.
+   */
+  public static InputStream open(@NonNull FileSystem fileSystem, @NonNull Path path, CompressionCodec codec)
+      throws IOException {
+    if (codec == null) {
+      return fileSystem.open(path);
+    }
+
+    val inputStream = fileSystem.open(path, COMPRESSED_BUFFER_SIZE);
+    val decompressor = CodecPool.getDecompressor(codec);
+    if (decompressor == null) {
+      return codec.createInputStream(inputStream);
+    }
+
+    try {
+      return new PooledDecompressorInputStream(codec.createInputStream(inputStream, decompressor), decompressor);
+    } catch (IOException | RuntimeException e) {
+      CodecPool.returnDecompressor(decompressor);
+      inputStream.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the codec of {@code path} based on its extension, or {@code null} if it is not compressed
+   */
+  public static CompressionCodec getCodec(@NonNull FileSystem fileSystem, @NonNull Path path) {
+    return getCodecFactory(fileSystem.getConf()).getCodec(path);
+  }
+
+  public static boolean isCompressed(@NonNull FileSystem fileSystem, @NonNull Path path) {
+    return getCodec(fileSystem, path) != null;
+  }
+
+  private static CompressionCodecFactory getCodecFactory(Configuration conf) {
+    return CODEC_FACTORIES.getUnchecked(conf);
+  }
+
+  /**
+   * Returns its decompressor to the pool once closed.
+   */
+  private static class PooledDecompressorInputStream extends FilterInputStream {
+
+    private Decompressor decompressor;
+
+    private PooledDecompressorInputStream(InputStream inputStream, Decompressor decompressor) {
+      super(inputStream);
+      this.decompressor = decompressor;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (decompressor != null) {
+          CodecPool.returnDecompressor(decompressor);
+          decompressor = null;
+        }
+      }
+    }
+
+  }
+
+}
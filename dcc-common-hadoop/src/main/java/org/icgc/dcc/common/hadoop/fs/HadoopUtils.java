@@ -30,6 +30,7 @@ import static org.icgc.dcc.common.core.util.Joiners.PATH;
 import static org.icgc.dcc.common.core.util.Separators.DASH;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -40,14 +41,14 @@ import java.util.List;
 import java.util.regex.Pattern;
 
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileContext;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.fs.RawLocalFileSystem;
 import org.icgc.dcc.common.core.util.Separators;
 
 import com.google.common.base.Joiner;
@@ -100,13 +101,6 @@ public class HadoopUtils {
     return formatPrettyJson(stringWriter.toString());
   }
 
-  @SneakyThrows
-  private static FSDataInputStream open(
-      @NonNull final FileSystem fileSystem,
-      @NonNull final Path path) {
-    return fileSystem.open(path);
-  }
-
   @SneakyThrows
   private static void dumpConfiguration(Configuration configuration, StringWriter writer) {
     Configuration.dumpConfiguration(configuration, writer);
@@ -406,13 +400,9 @@ public class HadoopUtils {
       @NonNull final String separator) {
 
     val inputFile = new Path(inputFilePath);
-    val codec = new CompressionCodecFactory(fileSystem.getConf()).getCodec(inputFile);
 
     @Cleanup
-    InputStreamReader reader = new InputStreamReader(
-        codec == null ? fileSystem
-            .open(inputFile) : codec.createInputStream(fileSystem.open(inputFile)),
-        UTF_8);
+    InputStreamReader reader = new InputStreamReader(FileStreams.open(fileSystem, inputFile), UTF_8);
 
     val splitter = Separators.getCorrespondingSplitter(separator);
 
@@ -473,13 +463,24 @@ public class HadoopUtils {
   private static InputStream getFileInputStream(
       @NonNull final FileSystem fileSystem,
       @NonNull final Path path) {
-    val factory = new CompressionCodecFactory(fileSystem.getConf());
-
     val resolvedPath = FileContext.getFileContext(fileSystem.getUri()).resolvePath(path);
-    val codec = factory.getCodec(path);
-    val inputStream = open(fileSystem, resolvedPath);
 
-    return codec == null ? inputStream : codec.createInputStream(inputStream);
+    return FileStreams.open(fileSystem, resolvedPath, FileStreams.getCodec(fileSystem, path));
+  }
+
+  /**
+   * @return the file backing {@code path} if {@code fileSystem} is local, so that it may be read without Hadoop's
+   * checksummed streams
+   */
+  public static Optional<File> getLocalFile(@NonNull FileSystem fileSystem, @NonNull Path path) {
+    if (fileSystem instanceof LocalFileSystem) {
+      return Optional.of(((LocalFileSystem) fileSystem).pathToFile(path));
+    }
+    if (fileSystem instanceof RawLocalFileSystem) {
+      return Optional.of(((RawLocalFileSystem) fileSystem).pathToFile(path));
+    }
+
+    return Optional.absent();
   }
 
   private static List<Path> getSortedPartFiles(
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.common.hadoop.fs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import lombok.NonNull;
+
+/**
+ * Reads a range of a local file through read-only {@link MappedByteBuffer} windows, bypassing the buffering and
+ * checksumming of Hadoop's local input streams.
+ * <p>
+ * Not thread safe.
+ */
+public class MappedFileInputStream extends InputStream {
+
+  /**
+   * Constants.
+   */
+  private static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+
+  /**
+   * Configuration.
+   */
+  private final FileChannel channel;
+  private final long end;
+  private final long windowSize;
+
+  /**
+   * State.
+   */
+  private long windowStart;
+  private MappedByteBuffer window;
+
+  public MappedFileInputStream(@NonNull File file) throws IOException {
+    this(file, 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * Reads {@code [start, end)} of {@code file}, where {@code end} is capped to the file length.
+   */
+  public MappedFileInputStream(@NonNull File file, long start, long end) throws IOException {
+    this(file, start, end, DEFAULT_WINDOW_SIZE);
+  }
+
+  MappedFileInputStream(@NonNull File file, long start, long end, long windowSize) throws IOException {
+    checkArgument(0 <= start && start <= end, "Invalid range [%s, %s)", start, end);
+    checkArgument(windowSize > 0, "Window size must be positive: %s", windowSize);
+    this.channel = FileChannel.open(file.toPath(), READ);
+    this.end = Math.min(end, channel.size());
+    this.windowStart = Math.min(start, this.end);
+    this.windowSize = windowSize;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!fill()) {
+      return -1;
+    }
+
+    return window.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    checkPositionIndexes(offset, offset + length, buffer.length);
+    if (length == 0) {
+      return 0;
+    }
+    if (!fill()) {
+      return -1;
+    }
+
+    int count = Math.min(length, window.remaining());
+    window.get(buffer, offset, count);
+
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0) {
+      return 0;
+    }
+
+    long position = getPosition();
+    long skipped = Math.min(n, end - position);
+    windowStart = position + skipped;
+    window = null;
+
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return (int) Math.min(end - getPosition(), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void close() throws IOException {
+    // Mappings are released when the buffers are collected
+    window = null;
+    channel.close();
+  }
+
+  private long getPosition() {
+    return window == null ? windowStart : windowStart + window.position();
+  }
+
+  /**
+   * @return {@code true} if the current window has remaining bytes after mapping the next one if needed
+   */
+  private boolean fill() throws IOException {
+    if (window != null) {
+      if (window.hasRemaining()) {
+        return true;
+      }
+
+      windowStart += window.limit();
+      window = null;
+    }
+
+    if (windowStart >= end) {
+      return false;
+    }
+
+    window = channel.map(READ_ONLY, windowStart, Math.min(windowSize, end - windowStart));
+
+    return true;
+  }
+
+}
@@ -17,28 +17,75 @@
  */
 package org.icgc.dcc.common.hadoop.parser;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.icgc.dcc.common.hadoop.fs.HadoopUtils.getLocalFile;
+
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import lombok.Cleanup;
-import lombok.RequiredArgsConstructor;
+import lombok.NonNull;
 import lombok.val;
 
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.icgc.dcc.common.hadoop.fs.FileStreams;
+import org.icgc.dcc.common.hadoop.fs.MappedFileInputStream;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.LineReader;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
-@RequiredArgsConstructor
 public class FileParser<T> {
 
+  /**
+   * Initial size of the line buffer of {@link ByteLineParser}s. Grown to fit the longest line.
+   */
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final byte LINE_SEPARATOR = '\n';
+  private static final byte CARRIAGE_RETURN = '\r';
+
   private final FileSystem fileSystem;
   private final FileLineParser<T> lineParser;
+  /**
+   * Creates the line parsers of the parallel chunks.
+   */
+  private final Supplier<? extends FileLineParser<T>> lineParsers;
   private final boolean processHeader;
 
+  /**
+   * Creates a parser which shares the {@code lineParser} between the chunks of a parallel parse, so it must be thread
+   * safe.
+   */
+  public FileParser(FileSystem fileSystem, FileLineParser<T> lineParser, boolean processHeader) {
+    this.fileSystem = fileSystem;
+    this.lineParser = lineParser;
+    this.lineParsers = () -> lineParser;
+    this.processHeader = processHeader;
+  }
+
+  /**
+   * Creates a parser which uses a new line parser for each chunk of a parallel parse.
+   */
+  public FileParser(FileSystem fileSystem, @NonNull Supplier<? extends FileLineParser<T>> lineParsers,
+      boolean processHeader) {
+    this.fileSystem = fileSystem;
+    this.lineParser = lineParsers.get();
+    this.lineParsers = lineParsers;
+    this.processHeader = processHeader;
+  }
+
   public long parse(Path filePath, FileRecordProcessor<T> recordProcessor) throws IOException {
     @Cleanup
     val inputStream = createInputStream(filePath);
@@ -46,15 +93,86 @@ public class FileParser<T> {
     return parse(inputStream, recordProcessor);
   }
 
+  /**
+   * Parses an uncompressed file in {@code parallelism} chunks aligned to line starts. Each chunk is parsed on its own
+   * thread and passes its records to its own processor created by {@code recordProcessors}. Line numbers are global:
+   * newlines of the chunks are counted in a first parallel pass. Compressed files are parsed sequentially by a single
+   * processor.
+   * 
+   * @return the number of lines
+   */
+  public long parse(@NonNull Path filePath, int parallelism,
+      @NonNull Supplier<? extends FileRecordProcessor<T>> recordProcessors) throws IOException {
+    checkArgument(parallelism > 0, "Parallelism must be positive: %s", parallelism);
+    if (parallelism == 1 || FileStreams.isCompressed(fileSystem, filePath)) {
+      return parse(filePath, recordProcessors.get());
+    }
+
+    val boundaries = getChunkBoundaries(filePath, parallelism);
+    val threadFactory = new ThreadFactoryBuilder().setNameFormat("file-parser-%d").setDaemon(true).build();
+    val executor = newFixedThreadPool(parallelism, threadFactory);
+    try {
+      // Lines before each chunk. The last chunk doesn't need to be counted
+      List<Callable<Long>> counts = Lists.newArrayList();
+      for (int i = 0; i < parallelism - 1; i++) {
+        val chunk = i;
+        counts.add(() -> countLines(filePath, boundaries[chunk], boundaries[chunk + 1]));
+      }
+
+      long firstLineNumber = 1;
+      val chunkLineNumbers = new long[parallelism];
+      val countFutures = executor.invokeAll(counts);
+      for (int i = 0; i < parallelism; i++) {
+        chunkLineNumbers[i] = firstLineNumber;
+        if (i < countFutures.size()) {
+          firstLineNumber += get(countFutures.get(i));
+        }
+      }
+
+      List<Callable<Long>> chunks = Lists.newArrayList();
+      for (int i = 0; i < parallelism; i++) {
+        val chunk = i;
+        chunks.add(() -> parseChunk(filePath, boundaries[chunk], boundaries[chunk + 1], chunkLineNumbers[chunk],
+            recordProcessors.get()));
+      }
+
+      long lineCount = 0;
+      for (val future : executor.invokeAll(chunks)) {
+        lineCount += get(future);
+      }
+
+      return lineCount;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while parsing: '" + filePath + "'", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   public long parse(InputStream inputStream, FileRecordProcessor<T> recordProcessor) throws IOException {
+    return parse(inputStream, lineParser, 1, recordProcessor);
+  }
+
+  public long parse(LineReader reader, FileRecordProcessor<T> recordProcessor) throws IOException {
+    return parse(reader, lineParser, 1, recordProcessor);
+  }
+
+  private long parse(InputStream inputStream, FileLineParser<T> lineParser, long firstLineNumber,
+      FileRecordProcessor<T> recordProcessor) throws IOException {
+    if (lineParser instanceof ByteLineParser) {
+      return parse(inputStream, (ByteLineParser<T>) lineParser, firstLineNumber, recordProcessor);
+    }
+
     val reader = new LineReader(new InputStreamReader(inputStream));
 
-    return parse(reader, recordProcessor);
+    return parse(reader, lineParser, firstLineNumber, recordProcessor);
   }
 
-  public long parse(LineReader reader, FileRecordProcessor<T> recordProcessor) throws IOException {
+  private long parse(LineReader reader, FileLineParser<T> lineParser, long firstLineNumber,
+      FileRecordProcessor<T> recordProcessor) throws IOException {
     // Line state (one-based)
-    long lineNumber = 1;
+    long lineNumber = firstLineNumber;
     String line;
 
     // Read all lines
@@ -70,20 +188,169 @@ public class FileParser<T> {
       lineNumber++;
     }
 
-    return lineNumber - 1;
+    return lineNumber - firstLineNumber;
   }
 
   /**
-   * TODO: move this to an FS abstraction.
+   * Reads lines into a reusable buffer without decoding them. Lines are terminated by {@code \n}, {@code \r\n} or
+   * {@code \r}, like {@link LineReader}, and passed to the parser without the terminator.
    */
-  private DataInputStream createInputStream(Path file) {
-    val factory = new CompressionCodecFactory(fileSystem.getConf());
+  private long parse(InputStream inputStream, ByteLineParser<T> byteLineParser, long firstLineNumber,
+      FileRecordProcessor<T> recordProcessor) throws IOException {
+    // Line state (one-based)
+    long lineNumber = firstLineNumber;
+    byte[] buffer = new byte[BUFFER_SIZE];
+
+    // Unprocessed bytes are in [start, end), of which [start, scanned) contain no line terminator
+    int start = 0;
+    int scanned = 0;
+    int end = 0;
+    while (true) {
+      int separator = indexOfLineTerminator(buffer, scanned, end);
+
+      // A carriage return at the end of the buffer might be followed by a line feed which isn't read yet
+      if (separator >= 0 && (buffer[separator] == LINE_SEPARATOR || separator + 1 < end)) {
+        process(lineNumber++, byteLineParser.parse(buffer, start, separator - start), recordProcessor);
+        start = separator + 1;
+        if (buffer[separator] == CARRIAGE_RETURN && buffer[start] == LINE_SEPARATOR) {
+          start++;
+        }
+
+        scanned = start;
+        continue;
+      }
+
+      // Make room for the rest of the line
+      scanned = separator >= 0 ? separator : end;
+      if (start > 0) {
+        System.arraycopy(buffer, start, buffer, 0, end - start);
+        end -= start;
+        scanned -= start;
+        start = 0;
+      } else if (end == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+
+      int read = inputStream.read(buffer, end, buffer.length - end);
+      if (read < 0) {
+        break;
+      }
 
+      end += read;
+    }
+
+    // Last line, which is either unterminated or terminated by a carriage return
+    if (end > start) {
+      val length = buffer[end - 1] == CARRIAGE_RETURN ? end - start - 1 : end - start;
+      process(lineNumber++, byteLineParser.parse(buffer, start, length), recordProcessor);
+    }
+
+    return lineNumber - firstLineNumber;
+  }
+
+  private void process(long lineNumber, T record, FileRecordProcessor<T> recordProcessor) throws IOException {
+    if (processHeader || lineNumber > 1) {
+      recordProcessor.process(lineNumber, record);
+    }
+  }
+
+  private long parseChunk(Path filePath, long start, long end, long firstLineNumber,
+      FileRecordProcessor<T> recordProcessor) throws IOException {
+    @Cleanup
+    val inputStream = openChunk(filePath, start, end);
+
+    return parse(inputStream, lineParsers.get(), firstLineNumber, recordProcessor);
+  }
+
+  private long countLines(Path filePath, long start, long end) throws IOException {
+    @Cleanup
+    val inputStream = openChunk(filePath, start, end);
+
+    // Counts lines the way parse splits them, where a carriage return followed by a line feed counts once
+    long count = 0;
+    boolean carriageReturn = false;
+    val buffer = new byte[BUFFER_SIZE];
+    int read;
+    while ((read = inputStream.read(buffer)) >= 0) {
+      for (int i = 0; i < read; i++) {
+        val value = buffer[i];
+        if (value == LINE_SEPARATOR || carriageReturn) {
+          count++;
+        }
+
+        carriageReturn = value == CARRIAGE_RETURN;
+      }
+    }
+
+    return carriageReturn ? count + 1 : count;
+  }
+
+  /**
+   * @return {@code parallelism + 1} offsets, where chunk {@code i} is {@code [offsets[i], offsets[i + 1])}. Each chunk
+   * but the first starts right after a line separator. Chunks of files with few long lines might be empty.
+   */
+  private long[] getChunkBoundaries(Path filePath, int parallelism) throws IOException {
+    val length = fileSystem.getFileStatus(filePath).getLen();
+    val chunkSize = (length + parallelism - 1) / parallelism;
+    val boundaries = new long[parallelism + 1];
+    boundaries[parallelism] = length;
+
+    @Cleanup
+    val inputStream = fileSystem.open(filePath);
+    for (int i = 1; i < parallelism; i++) {
+      // Start of the first line starting at or after the nominal boundary
+      long position = Math.max(Math.min(i * chunkSize, length), boundaries[i - 1]);
+      if (position > 0 && position < length) {
+        inputStream.seek(position - 1);
+        int value;
+        while ((value = inputStream.read()) >= 0 && value != LINE_SEPARATOR) {
+          position++;
+        }
+
+        position = Math.min(position, length);
+      }
+
+      boundaries[i] = position;
+    }
+
+    return boundaries;
+  }
+
+  private InputStream openChunk(Path filePath, long start, long end) throws IOException {
+    val localFile = getLocalFile(fileSystem, filePath);
+    if (localFile.isPresent()) {
+      return new MappedFileInputStream(localFile.get(), start, end);
+    }
+
+    val inputStream = fileSystem.open(filePath);
+    inputStream.seek(start);
+
+    return ByteStreams.limit(inputStream, end - start);
+  }
+
+  private static long get(Future<Long> future) throws IOException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      val cause = e.getCause();
+      Throwables.propagateIfInstanceOf(cause, IOException.class);
+      throw Throwables.propagate(cause);
+    }
+  }
+
+  private static int indexOfLineTerminator(byte[] buffer, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buffer[i] == LINE_SEPARATOR || buffer[i] == CARRIAGE_RETURN) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  private DataInputStream createInputStream(Path file) {
     try {
-      val codec = factory.getCodec(file);
-      InputStream inputStream =
-          (codec == null) ? fileSystem.open(file) : codec.createInputStream(fileSystem.open(file));
-      return new DataInputStream(inputStream);
+      return new DataInputStream(FileStreams.openMapped(fileSystem, file));
     } catch (IOException e) {
       throw new RuntimeException("Error reading: '" + file.toString() + "'", e);
     }
@@ -80,6 +80,22 @@ public class FileParsers {
     return new FileParser<String>(fileSystem, new FileLineStringParser(), processHeader);
   }
 
+  public static FileParser<TsvRecord> newTsvRecordFileParser() {
+    return newTsvRecordFileParser(DEFAULT_FILE_SYSTEM);
+  }
+
+  public static FileParser<TsvRecord> newTsvRecordFileParser(FileSystem fileSystem) {
+    return newTsvRecordFileParser(fileSystem, false);
+  }
+
+  /**
+   * Creates a parser which passes a single reusable {@link TsvRecord} to the record processor. The record is only
+   * valid within {@link FileRecordProcessor#process(long, Object)}.
+   */
+  public static FileParser<TsvRecord> newTsvRecordFileParser(FileSystem fileSystem, boolean processHeader) {
+    return new FileParser<TsvRecord>(fileSystem, FileLineTsvRecordParser::new, processHeader);
+  }
+
   @SneakyThrows
   private static FileSystem getDefaultFileSystem() {
     return FileSystem.getLocal(new Configuration());
@@ -18,11 +18,23 @@ package org.icgc.dcc.common.hadoop.parser;
  * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.icgc.dcc.common.hadoop.parser.FileParsers.newStringFileParser;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import lombok.NonNull;
 import lombok.SneakyThrows;
+import lombok.Value;
 import lombok.val;
 import lombok.extern.slf4j.Slf4j;
 
@@ -30,10 +42,25 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 @Slf4j
 public class TsvPartFileProcessor {
 
+  /**
+   * Number of lines handed over at once from a part parser to the ordered merge.
+   */
+  static final int ORDERED_BATCH_SIZE = 1024;
+  /**
+   * Number of batches buffered per part before its parser blocks.
+   */
+  private static final int ORDERED_QUEUE_SIZE = 16;
+  /**
+   * Marks the end of a part.
+   */
+  private static final List<Line> END = Collections.emptyList();
+
   public static void parseFile(
       FileSystem fileSystem,
       Path inputFile,
@@ -60,6 +87,102 @@ public class TsvPartFileProcessor {
     }
   }
 
+  /**
+   * Parses part files concurrently using {@code poolSize} threads.
+   * <p>
+   * When {@code ordered} is {@code false} records are passed to {@code recordProcessor} from the parsing threads as
+   * they are read, so it must be thread safe and should not depend on order (e.g. counting or loading). When
+   * {@code ordered} is {@code true} records are passed from the calling thread in the same order as
+   * {@link #parseFiles(FileSystem, List, FileRecordProcessor)}. Parts ahead of the current one are buffered up to
+   * {@link #ORDERED_QUEUE_SIZE} batches of {@link #ORDERED_BATCH_SIZE} lines each, so memory stays bounded by
+   * {@code poolSize}.
+   * 
+   * @return the total number of lines read
+   */
+  public static long parseFiles(
+      @NonNull FileSystem fileSystem,
+      @NonNull List<Path> inputFiles,
+      int poolSize,
+      boolean ordered,
+      @NonNull FileRecordProcessor<String> recordProcessor) {
+    checkArgument(poolSize > 0, "Pool size must be positive: %s", poolSize);
+    val partTotalCount = inputFiles.size();
+    val threadFactory = new ThreadFactoryBuilder().setNameFormat("part-file-parser-%d").setDaemon(true).build();
+    val executor = newFixedThreadPool(poolSize, threadFactory);
+
+    try {
+      // Submitted in order so that each part starts no later than the parts after it
+      List<Part> parts = Lists.newArrayListWithCapacity(partTotalCount);
+      for (int i = 0; i < partTotalCount; i++) {
+        val partNumber = i + 1;
+        val partFile = inputFiles.get(i);
+        BlockingQueue<List<Line>> queue = ordered ? new ArrayBlockingQueue<>(ORDERED_QUEUE_SIZE) : null;
+        BatchingProcessor batchingProcessor = ordered ? new BatchingProcessor(queue) : null;
+        FileRecordProcessor<String> partProcessor = ordered ? batchingProcessor : recordProcessor;
+
+        val future = executor.submit(() -> {
+          try {
+            log.info("    * [{}/{}] Parsing part file '{}'", new Object[] { partNumber, partTotalCount, partFile });
+            val lineCount = parseRecord(newStringFileParser(fileSystem, true), partFile, partProcessor);
+            if (ordered) {
+              batchingProcessor.flush();
+            }
+
+            log.info("    * [{}/{}] Number of lines read: '{}'",
+                new Object[] { partNumber, partTotalCount, lineCount });
+            return lineCount;
+          } finally {
+            if (ordered) {
+              queue.put(END);
+            }
+          }
+        });
+
+        parts.add(new Part(queue, future));
+      }
+
+      val lineCounts = new LongSummaryStatistics();
+      for (val part : parts) {
+        if (ordered) {
+          merge(part, recordProcessor);
+        }
+
+        lineCounts.accept(getLineCount(part));
+      }
+
+      log.info("    * Parsed {} part files: total lines = {}, min = {}, max = {}, average = {}", new Object[] {
+          lineCounts.getCount(), lineCounts.getSum(), lineCounts.getMin(), lineCounts.getMax(),
+          String.format("%.1f", lineCounts.getAverage()) });
+
+      return lineCounts.getSum();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @SneakyThrows
+  private static void merge(Part part, FileRecordProcessor<String> recordProcessor) {
+    while (true) {
+      val batch = part.getQueue().take();
+      if (batch == END) {
+        return;
+      }
+
+      for (val line : batch) {
+        recordProcessor.process(line.getLineNumber(), line.getRecord());
+      }
+    }
+  }
+
+  @SneakyThrows
+  private static long getLineCount(Part part) {
+    try {
+      return part.getLineCount().get();
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    }
+  }
+
   @SneakyThrows
   private static long parseRecord(
       FileParser<String> partFileParser,
@@ -68,4 +191,57 @@ public class TsvPartFileProcessor {
     return partFileParser.parse(partFile, recordProcessor);
   }
 
+  @Value
+  private static class Part {
+
+    BlockingQueue<List<Line>> queue;
+    Future<Long> lineCount;
+
+  }
+
+  @Value
+  static class Line {
+
+    long lineNumber;
+    String record;
+
+  }
+
+  /**
+   * Hands over lines of a part to the ordered merge in batches, blocking when the merge is behind.
+   */
+  static class BatchingProcessor implements FileRecordProcessor<String> {
+
+    private final BlockingQueue<List<Line>> queue;
+    private List<Line> batch = Lists.newArrayListWithCapacity(ORDERED_BATCH_SIZE);
+
+    BatchingProcessor(BlockingQueue<List<Line>> queue) {
+      this.queue = queue;
+    }
+
+    @Override
+    public void process(long lineNumber, String record) throws IOException {
+      batch.add(new Line(lineNumber, record));
+      if (batch.size() == ORDERED_BATCH_SIZE) {
+        flush();
+      }
+    }
+
+    private void flush() throws IOException {
+      if (batch.isEmpty()) {
+        return;
+      }
+
+      try {
+        queue.put(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while buffering part lines");
+      }
+
+      batch = Lists.newArrayListWithCapacity(ORDERED_BATCH_SIZE);
+    }
+
+  }
+
 }
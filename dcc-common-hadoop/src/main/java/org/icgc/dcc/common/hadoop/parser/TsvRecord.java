@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.common.hadoop.parser;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+
+/**
+ * Reusable cursor over the tab separated fields of a single UTF-8 encoded line. Fields are exposed as slices of the
+ * underlying buffer and are only decoded or parsed on request.
+ * <p>
+ * The record and its buffer are reused for the next line, so they are only valid within
+ * {@link FileRecordProcessor#process(long, Object)}. Not thread safe.
+ */
+public class TsvRecord {
+
+  /**
+   * Constants.
+   */
+  private static final byte FIELD_SEPARATOR = '\t';
+  private static final byte CARRIAGE_RETURN = '\r';
+  private static final int INITIAL_FIELD_CAPACITY = 32;
+
+  /**
+   * State.
+   */
+  private byte[] buffer;
+  // Start offset of each field. The field ends one byte before the start of the next one
+  private int[] fieldStarts = new int[INITIAL_FIELD_CAPACITY + 1];
+  private int fieldCount;
+
+  /**
+   * Points the record to the line in {@code buffer[offset, offset + length)}, excluding the line terminator.
+   */
+  public TsvRecord reset(byte[] buffer, int offset, int length) {
+    // Windows line endings
+    if (length > 0 && buffer[offset + length - 1] == CARRIAGE_RETURN) {
+      length--;
+    }
+
+    this.buffer = buffer;
+    this.fieldCount = 0;
+    int end = offset + length;
+    addField(offset);
+    for (int i = offset; i < end; i++) {
+      if (buffer[i] == FIELD_SEPARATOR) {
+        addField(i + 1);
+      }
+    }
+
+    // Sentinel so the last field ends like the others
+    fieldStarts[fieldCount] = end + 1;
+
+    return this;
+  }
+
+  public int getFieldCount() {
+    return fieldCount;
+  }
+
+  /**
+   * @return the buffer the field offsets refer to
+   */
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  public int getOffset(int field) {
+    checkElementIndex(field, fieldCount);
+    return fieldStarts[field];
+  }
+
+  public int getLength(int field) {
+    checkElementIndex(field, fieldCount);
+    return fieldStarts[field + 1] - fieldStarts[field] - 1;
+  }
+
+  public boolean isEmpty(int field) {
+    return getLength(field) == 0;
+  }
+
+  public String getString(int field) {
+    return new String(buffer, getOffset(field), getLength(field), UTF_8);
+  }
+
+  /**
+   * @return {@code true} if the field is equal to the UTF-8 encoded {@code value}
+   */
+  public boolean equals(int field, byte[] value) {
+    int length = getLength(field);
+    if (length != value.length) {
+      return false;
+    }
+
+    int offset = getOffset(field);
+    for (int i = 0; i < length; i++) {
+      if (buffer[offset + i] != value[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  public int getInt(int field) {
+    long value = getLong(field);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw newNumberFormatException(field);
+    }
+
+    return (int) value;
+  }
+
+  /**
+   * Parses a decimal number without decoding the field. Accumulates negatively to handle {@code Long.MIN_VALUE}.
+   */
+  public long getLong(int field) {
+    int offset = getOffset(field);
+    int end = offset + getLength(field);
+    if (offset == end) {
+      throw newNumberFormatException(field);
+    }
+
+    boolean negative = false;
+    long limit = -Long.MAX_VALUE;
+    int i = offset;
+    byte first = buffer[i];
+    if (first == '-' || first == '+') {
+      negative = first == '-';
+      limit = negative ? Long.MIN_VALUE : limit;
+      if (++i == end) {
+        throw newNumberFormatException(field);
+      }
+    }
+
+    long multiplyLimit = limit / 10;
+    long result = 0;
+    for (; i < end; i++) {
+      int digit = buffer[i] - '0';
+      if (digit < 0 || digit > 9 || result < multiplyLimit) {
+        throw newNumberFormatException(field);
+      }
+
+      result *= 10;
+      if (result < limit + digit) {
+        throw newNumberFormatException(field);
+      }
+
+      result -= digit;
+    }
+
+    return negative ? result : -result;
+  }
+
+  /**
+   * Decodes all the fields. Allocates, intended for compatibility with {@code String[]} based code.
+   */
+  public String[] toArray() {
+    String[] fields = new String[fieldCount];
+    for (int i = 0; i < fieldCount; i++) {
+      fields[i] = getString(i);
+    }
+
+    return fields;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+
+  private void addField(int start) {
+    // One slot is kept for the sentinel
+    if (fieldCount + 1 == fieldStarts.length) {
+      fieldStarts = Arrays.copyOf(fieldStarts, fieldStarts.length * 2);
+    }
+
+    fieldStarts[fieldCount++] = start;
+  }
+
+  private NumberFormatException newNumberFormatException(int field) {
+    return new NumberFormatException("For input string: \"" + getString(field) + "\" of field " + field);
+  }
+
+}
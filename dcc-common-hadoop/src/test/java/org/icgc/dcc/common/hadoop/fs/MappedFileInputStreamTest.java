@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.common.hadoop.fs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import lombok.val;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+
+public class MappedFileInputStreamTest {
+
+  /**
+   * Small enough for the test file to span several windows.
+   */
+  private static final long WINDOW_SIZE = 7;
+  private static final int FILE_SIZE = 100;
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  File file;
+  byte[] content;
+
+  @Before
+  public void setUp() throws IOException {
+    this.content = new byte[FILE_SIZE];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) (i * 31);
+    }
+
+    this.file = tmp.newFile("file.tsv");
+    Files.write(file.toPath(), content);
+  }
+
+  @Test
+  public void testReadAcrossWindows() throws IOException {
+    try (val inputStream = new MappedFileInputStream(file, 0, Long.MAX_VALUE, WINDOW_SIZE)) {
+      assertThat(ByteStreams.toByteArray(inputStream)).isEqualTo(content);
+      assertThat(inputStream.read()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testReadBytesAcrossWindows() throws IOException {
+    try (val inputStream = new MappedFileInputStream(file, 0, Long.MAX_VALUE, WINDOW_SIZE)) {
+      for (int i = 0; i < content.length; i++) {
+        assertThat(inputStream.read()).isEqualTo(content[i] & 0xFF);
+      }
+
+      assertThat(inputStream.read()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testReadDefaultWindow() throws IOException {
+    try (val inputStream = new MappedFileInputStream(file)) {
+      assertThat(ByteStreams.toByteArray(inputStream)).isEqualTo(content);
+    }
+  }
+
+  @Test
+  public void testReadRange() throws IOException {
+    try (val inputStream = new MappedFileInputStream(file, 13, 58, WINDOW_SIZE)) {
+      assertThat(inputStream.available()).isEqualTo(45);
+      assertThat(ByteStreams.toByteArray(inputStream)).isEqualTo(Arrays.copyOfRange(content, 13, 58));
+      assertThat(inputStream.available()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void testReadRangeCappedToLength() throws IOException {
+    try (val inputStream = new MappedFileInputStream(file, 90, 1000, WINDOW_SIZE)) {
+      assertThat(ByteStreams.toByteArray(inputStream)).isEqualTo(Arrays.copyOfRange(content, 90, FILE_SIZE));
+    }
+  }
+
+  @Test
+  public void testReadEmptyRange() throws IOException {
+    try (val inputStream = new MappedFileInputStream(file, 20, 20, WINDOW_SIZE)) {
+      assertThat(inputStream.read()).isEqualTo(-1);
+    }
+
+    try (val inputStream = new MappedFileInputStream(file, 200, 300, WINDOW_SIZE)) {
+      assertThat(inputStream.read(new byte[10], 0, 10)).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testReadPartialWindow() throws IOException {
+    try (val inputStream = new MappedFileInputStream(file, 0, Long.MAX_VALUE, WINDOW_SIZE)) {
+      val buffer = new byte[10];
+
+      // A read never spans more than one window
+      assertThat(inputStream.read(buffer, 0, buffer.length)).isEqualTo(7);
+      assertThat(inputStream.read(buffer, 7, 3)).isEqualTo(3);
+      assertThat(buffer).isEqualTo(Arrays.copyOfRange(content, 0, 10));
+    }
+  }
+
+  @Test
+  public void testSkip() throws IOException {
+    try (val inputStream = new MappedFileInputStream(file, 5, 95, WINDOW_SIZE)) {
+      assertThat(inputStream.read()).isEqualTo(content[5] & 0xFF);
+
+      // Within the window
+      assertThat(inputStream.skip(2)).isEqualTo(2);
+      assertThat(inputStream.read()).isEqualTo(content[9] & 0xFF);
+
+      // Across several windows
+      assertThat(inputStream.skip(40)).isEqualTo(40);
+      assertThat(inputStream.read()).isEqualTo(content[50] & 0xFF);
+
+      assertThat(inputStream.skip(0)).isEqualTo(0);
+      assertThat(inputStream.skip(-1)).isEqualTo(0);
+      assertThat(inputStream.available()).isEqualTo(44);
+
+      // Past the end of the range
+      assertThat(inputStream.skip(100)).isEqualTo(44);
+      assertThat(inputStream.read()).isEqualTo(-1);
+      assertThat(inputStream.skip(1)).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void testInvalidRange() throws IOException {
+    try {
+      new MappedFileInputStream(file, 10, 5).close();
+      throw new AssertionError("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("[10, 5)");
+    }
+  }
+
+  @Test
+  public void testOnlyMappedIfRequested() throws IOException {
+    val fileSystem = FileSystem.getLocal(new Configuration());
+    val path = new Path(file.getAbsolutePath());
+
+    try (val inputStream = FileStreams.open(fileSystem, path)) {
+      // Keeps the checksum verification of the local file system
+      assertThat(inputStream).isNotInstanceOf(MappedFileInputStream.class);
+      assertThat(ByteStreams.toByteArray(inputStream)).isEqualTo(content);
+    }
+
+    try (val inputStream = FileStreams.openMapped(fileSystem, path)) {
+      assertThat(inputStream).isInstanceOf(MappedFileInputStream.class);
+      assertThat(ByteStreams.toByteArray(inputStream)).isEqualTo(content);
+    }
+  }
+
+}
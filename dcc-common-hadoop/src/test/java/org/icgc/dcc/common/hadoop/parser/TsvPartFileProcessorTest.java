@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.common.hadoop.parser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.icgc.dcc.common.hadoop.parser.TsvPartFileProcessor.ORDERED_BATCH_SIZE;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.val;
+
+import org.apache.hadoop.fs.Path;
+import org.icgc.dcc.common.hadoop.parser.TsvPartFileProcessor.BatchingProcessor;
+import org.icgc.dcc.common.hadoop.parser.TsvPartFileProcessor.Line;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+
+public class TsvPartFileProcessorTest {
+
+  private static final int PART_COUNT = 5;
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void testParseFilesOrdered() throws IOException {
+    val parts = createParts();
+    val expected = Lists.<String> newArrayList();
+    TsvPartFileProcessor.parseFiles(FileParsers.DEFAULT_FILE_SYSTEM, parts, (lineNumber, record) -> {
+      expected.add(record);
+    });
+
+    val callerThread = Thread.currentThread();
+    val records = Lists.<String> newArrayList();
+    val lineCount = TsvPartFileProcessor.parseFiles(FileParsers.DEFAULT_FILE_SYSTEM, parts, 3, true,
+        (lineNumber, record) -> {
+          assertThat(Thread.currentThread()).isSameAs(callerThread);
+          records.add(record);
+        });
+
+    assertThat(lineCount).isEqualTo(expected.size());
+    assertThat(records).isEqualTo(expected);
+  }
+
+  @Test
+  public void testParseFilesUnordered() throws IOException {
+    val parts = createParts();
+    val lineCount = new AtomicLong();
+    val total = TsvPartFileProcessor.parseFiles(FileParsers.DEFAULT_FILE_SYSTEM, parts, 3, false,
+        (lineNumber, record) -> lineCount.incrementAndGet());
+
+    assertThat(total).isEqualTo(lineCount.get());
+  }
+
+  @Test
+  public void testParseFilesFailedPart() throws IOException {
+    val parts = Lists.newArrayList(createParts());
+    parts.add(2, new Path(tmp.getRoot().getAbsolutePath(), "missing.tsv"));
+
+    for (boolean ordered : new boolean[] { true, false }) {
+      try {
+        TsvPartFileProcessor.parseFiles(FileParsers.DEFAULT_FILE_SYSTEM, parts, 3, ordered, (lineNumber, record) -> {
+        });
+      } catch (RuntimeException e) {
+        assertThat(e).hasMessageContaining("missing.tsv");
+        continue;
+      }
+
+      throw new AssertionError("Expected the failure of the missing part, ordered: " + ordered);
+    }
+  }
+
+  @Test
+  public void testBatchingProcessorBlocksWhenMergeIsBehind() throws InterruptedException {
+    BlockingQueue<List<Line>> queue = new ArrayBlockingQueue<>(2);
+    val processor = new BatchingProcessor(queue);
+    val processed = new AtomicLong();
+    val parser = new Thread(() -> {
+      try {
+        for (long i = 0; i < 10L * ORDERED_BATCH_SIZE; i++) {
+          processor.process(i, "record");
+          processed.incrementAndGet();
+        }
+      } catch (IOException e) {
+        // Interrupted
+      }
+    });
+
+    parser.start();
+    parser.join(1000);
+
+    // Full queue and a batch being filled
+    assertThat(parser.isAlive()).isTrue();
+    assertThat(queue).hasSize(2);
+    assertThat(processed.get()).isLessThan(3L * ORDERED_BATCH_SIZE);
+
+    parser.interrupt();
+    parser.join();
+  }
+
+  /**
+   * Parts of different sizes, so some of them span several batches and finish after the following ones.
+   */
+  private List<Path> createParts() throws IOException {
+    val parts = Lists.<Path> newArrayList();
+    for (int part = 0; part < PART_COUNT; part++) {
+      val content = new StringBuilder();
+      val lines = (PART_COUNT - part) * ORDERED_BATCH_SIZE + part * 7;
+      for (int line = 0; line < lines; line++) {
+        content.append(part).append('\t').append(line).append('\n');
+      }
+
+      val file = tmp.newFile("part-" + part + ".tsv");
+      Files.write(file.toPath(), content.toString().getBytes(UTF_8));
+      parts.add(new Path(file.getAbsolutePath()));
+    }
+
+    return parts;
+  }
+
+}
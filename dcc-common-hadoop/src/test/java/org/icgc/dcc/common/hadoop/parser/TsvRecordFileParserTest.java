@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.icgc.dcc.common.hadoop.parser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.icgc.dcc.common.hadoop.parser.FileParsers.newTsvRecordFileParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.val;
+
+import org.apache.hadoop.fs.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+
+public class TsvRecordFileParserTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void testParse() throws IOException {
+    val records = parse("h1\th2\th3\r\na\t\t-42\n\né\t9223372036854775807\tx", false);
+
+    assertThat(records).containsExactly(
+        new String[] { "a", "", "-42" },
+        new String[] { "" },
+        new String[] { "é", "9223372036854775807", "x" });
+  }
+
+  @Test
+  public void testParseHeader() throws IOException {
+    val records = parse("h1\th2\na\tb\n", true);
+
+    assertThat(records).containsExactly(new String[] { "h1", "h2" }, new String[] { "a", "b" });
+  }
+
+  @Test
+  public void testParseLongLine() throws IOException {
+    val field = Strings.repeat("x", 200 * 1024);
+    val records = parse("h\n" + field + "\t1\n" + field, false);
+
+    assertThat(records).containsExactly(new String[] { field, "1" }, new String[] { field });
+  }
+
+  @Test
+  public void testParseLineTerminators() throws IOException {
+    // The carriage return of the second line ends the first read of the parser's 64 KB buffer
+    val field = Strings.repeat("x", 64 * 1024 - 4);
+    val lines = parseLines("a\r\n" + field + "\r\nb\rc\n\r\rd\r");
+
+    assertThat(lines).containsExactly("a", field, "b", "c", "", "", "d");
+  }
+
+  @Test
+  public void testParseParallelLineTerminators() throws IOException {
+    val content = new StringBuilder("h\r\n");
+    for (int i = 2; i <= 1000; i++) {
+      content.append(i).append(i % 3 == 0 ? "\r" : "\r\n");
+    }
+
+    val file = tmp.newFile("terminators.tsv");
+    Files.write(file.toPath(), content.toString().getBytes(UTF_8));
+
+    val parser = new FileParser<String>(FileParsers.DEFAULT_FILE_SYSTEM, RawLineParser::new, false);
+    Map<Long, String> lines = new ConcurrentHashMap<>();
+    val lineCount = parser.parse(new Path(file.getAbsolutePath()), 7, () -> lines::put);
+
+    assertThat(lineCount).isEqualTo(1000);
+    assertThat(lines).hasSize(999);
+    lines.forEach((lineNumber, line) -> assertThat(line).isEqualTo(lineNumber.toString()));
+  }
+
+  @Test
+  public void testParseParallel() throws IOException {
+    val content = new StringBuilder("h1\th2\n");
+    for (int i = 2; i <= 1000; i++) {
+      content.append(i).append('\t').append(Strings.repeat("x", i % 37)).append('\n');
+    }
+
+    val file = tmp.newFile("parallel.tsv");
+    Files.write(file.toPath(), content.toString().getBytes(UTF_8));
+
+    val parser = newTsvRecordFileParser(FileParsers.DEFAULT_FILE_SYSTEM, false);
+    Map<Long, Integer> records = new ConcurrentHashMap<>();
+    val lineCount = parser.parse(new Path(file.getAbsolutePath()), 7, () -> (lineNumber, record) -> {
+      records.put(lineNumber, record.getInt(0));
+    });
+
+    assertThat(lineCount).isEqualTo(1000);
+    assertThat(records).hasSize(999);
+    records.forEach((lineNumber, value) -> assertThat(value).isEqualTo(lineNumber.intValue()));
+  }
+
+  @Test
+  public void testNumbers() {
+    val record = new TsvRecord();
+    val line = "-2147483648\t+17\t-9223372036854775808\t9223372036854775808\t1a".getBytes(UTF_8);
+    record.reset(line, 0, line.length);
+
+    assertThat(record.getFieldCount()).isEqualTo(5);
+    assertThat(record.getInt(0)).isEqualTo(Integer.MIN_VALUE);
+    assertThat(record.getLong(1)).isEqualTo(17);
+    assertThat(record.getLong(2)).isEqualTo(Long.MIN_VALUE);
+    assertNumberFormatException(record, 3);
+    assertNumberFormatException(record, 4);
+  }
+
+  private static void assertNumberFormatException(TsvRecord record, int field) {
+    try {
+      record.getLong(field);
+    } catch (NumberFormatException e) {
+      return;
+    }
+
+    throw new AssertionError("Expected a NumberFormatException for field " + field);
+  }
+
+  private static List<String[]> parse(String content, boolean processHeader) throws IOException {
+    val parser = newTsvRecordFileParser(FileParsers.DEFAULT_FILE_SYSTEM, processHeader);
+    val records = Lists.<String[]> newArrayList();
+    parser.parse(new ByteArrayInputStream(content.getBytes(UTF_8)), (lineNumber, record) -> {
+      records.add(record.toArray());
+    });
+
+    return records;
+  }
+
+  private static List<String> parseLines(String content) throws IOException {
+    val parser = new FileParser<String>(FileParsers.DEFAULT_FILE_SYSTEM, new RawLineParser(), true);
+    val lines = Lists.<String> newArrayList();
+    parser.parse(new ByteArrayInputStream(content.getBytes(UTF_8)), (lineNumber, line) -> {
+      lines.add(line);
+    });
+
+    return lines;
+  }
+
+  /**
+   * Returns the raw lines passed by the parser.
+   */
+  private static class RawLineParser implements ByteLineParser<String> {
+
+    @Override
+    public String parse(String line) {
+      return line;
+    }
+
+    @Override
+    public String parse(byte[] buffer, int offset, int length) {
+      return new String(buffer, offset, length, UTF_8);
+    }
+
+  }
+
+}
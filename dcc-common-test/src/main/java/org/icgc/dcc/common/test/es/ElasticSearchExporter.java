@@ -21,97 +21,222 @@ import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET
 import static com.fasterxml.jackson.databind.SerializationFeature.FLUSH_AFTER_WRITE_VALUE;
 import static com.fasterxml.jackson.databind.SerializationFeature.INDENT_OUTPUT;
 import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
 
 import lombok.Cleanup;
+import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.val;
 import lombok.extern.slf4j.Slf4j;
 
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.search.SearchHit;
-import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.slice.SliceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+/**
+ * Exports all the documents of an index to JSON Lines files, one file per type and slice. Types and the slices of a
+ * type are scrolled concurrently by a pool of up to {@code MAX_THREADS} threads.
+ * <p>
+ * The legacy constructor exports each type to a single {@code <type>.json} file of pretty printed documents instead.
+ */
 @Slf4j
 public class ElasticSearchExporter {
 
-  private static final ObjectMapper MAPPER = new ObjectMapper().enable(INDENT_OUTPUT).enable(FLUSH_AFTER_WRITE_VALUE)
-      .configure(AUTO_CLOSE_TARGET, false);
+  private static final ObjectMapper LEGACY_MAPPER = new ObjectMapper().enable(INDENT_OUTPUT)
+      .enable(FLUSH_AFTER_WRITE_VALUE).configure(AUTO_CLOSE_TARGET, false);
+  private static final String LEGACY_FILE_EXTENSION = "json";
 
-  private static final String FILE_EXTENSION = "json";
+  private static final String FILE_EXTENSION = "jsonl";
+  private static final String GZIP_EXTENSION = "gz";
+  private static final String DOC_FIELD_NAME = "_doc";
+  private static final int SCROLL_SIZE = 1000;
+  private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(5);
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_THREADS = Runtime.getRuntime().availableProcessors();
 
   private final File directory;
 
   private final String indexName;
 
-  private final TransportClient esClient;
+  private final Client esClient;
+
+  /**
+   * Number of sliced scrolls per type.
+   */
+  private final int slices;
+
+  /**
+   * Whether export files are gzip compressed.
+   */
+  private final boolean compress;
+
+  /**
+   * Whether documents are pretty printed to {@code <type>.json} files rather than JSON Lines files.
+   */
+  private final boolean legacy;
 
   public ElasticSearchExporter(File targetDirectory, String indexName, TransportClient esClient) {
+    this(targetDirectory, indexName, esClient, 1, false, true);
+  }
+
+  public ElasticSearchExporter(@NonNull File targetDirectory, @NonNull String indexName, @NonNull Client esClient,
+      int slices, boolean compress) {
+    this(targetDirectory, indexName, esClient, slices, compress, false);
+  }
+
+  private ElasticSearchExporter(@NonNull File targetDirectory, @NonNull String indexName, @NonNull Client esClient,
+      int slices, boolean compress, boolean legacy) {
+    checkArgument(slices > 0, "Slices count must be positive: %s", slices);
     this.directory = targetDirectory;
     this.indexName = indexName;
     this.esClient = esClient;
+    this.slices = slices;
+    this.compress = compress;
+    this.legacy = legacy;
   }
 
   @SneakyThrows
   public void execute() {
-    for (String typeName : getTypeNames()) {
-      File exportFile = getExportFile(typeName);
-      log.info("Exporting {}...", exportFile);
+    val typeNames = getTypeNames();
+    if (typeNames.isEmpty()) {
+      return;
+    }
+
+    val threadFactory = new ThreadFactoryBuilder().setNameFormat("es-exporter-%d").setDaemon(true).build();
+    val executor = newFixedThreadPool(Math.min(typeNames.size() * slices, MAX_THREADS), threadFactory);
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (val typeName : typeNames) {
+        for (int slice = 0; slice < slices; slice++) {
+          val sliceId = slice;
+          futures.add(executor.submit(() -> export(typeName, sliceId)));
+        }
+      }
 
-      @Cleanup
-      Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(exportFile), UTF_8));
+      // Fails on the first failed export
+      for (val future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-      SearchHits hits = getSearchHits(typeName);
-      for (SearchHit hit : hits) {
-        Map<String, Object> source = hit.getSource();
+  @SneakyThrows
+  private void export(String typeName, int slice) {
+    val exportFile = getExportFile(typeName, slice);
+    log.info("Exporting {}...", exportFile);
+
+    @Cleanup
+    Writer writer = createWriter(exportFile);
+
+    val search = esClient.prepareSearch(indexName)
+        .setTypes(typeName)
+        .setScroll(SCROLL_KEEP_ALIVE)
+        .setSize(SCROLL_SIZE)
+        .addSort(SortBuilders.fieldSort(DOC_FIELD_NAME));
+    if (slices > 1) {
+      search.slice(new SliceBuilder(slice, slices));
+    }
 
-        MAPPER.writeValue(writer, source);
+    long count = 0;
+    SearchResponse response = search.get();
+    try {
+      while (response.getHits().getHits().length > 0) {
+        for (val hit : response.getHits()) {
+          if (write(writer, hit)) {
+            count++;
+          }
+        }
+
+        response = esClient.prepareSearchScroll(response.getScrollId()).setScroll(SCROLL_KEEP_ALIVE).get();
       }
+    } finally {
+      esClient.prepareClearScroll().addScrollId(response.getScrollId()).get();
     }
+
+    log.info("Exported {} documents to {}", count, exportFile);
+  }
+
+  /**
+   * Writes the source of the {@code hit} without deserializing it into a map, unless {@code legacy}. Returns
+   * {@code false} if the hit has no source.
+   */
+  private boolean write(Writer writer, SearchHit hit) throws IOException {
+    val source = hit.getSourceRef();
+    if (source == null) {
+      return false;
+    }
+
+    if (legacy) {
+      LEGACY_MAPPER.writeValue(writer, hit.getSource());
+      return true;
+    }
+
+    // Reformatted, so the source is written in a single line regardless of its original content type and formatting
+    writer.write(XContentHelper.convertToJson(source, true, XContentFactory.xContentType(source)));
+    writer.write('\n');
+
+    return true;
+  }
+
+  private Writer createWriter(File exportFile) throws IOException {
+    OutputStream outputStream = new FileOutputStream(exportFile);
+    if (compress) {
+      outputStream = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+    }
+
+    return new BufferedWriter(new OutputStreamWriter(outputStream, UTF_8), BUFFER_SIZE);
   }
 
   private Set<String> getTypeNames() {
     ClusterState cs = esClient.admin().cluster().prepareState()
         .setIndices(indexName).execute().actionGet().getState();
     IndexMetaData imd = cs.getMetaData().index(indexName);
-    
-    val result = ImmutableSet.<String>builder();
+
+    val result = ImmutableSet.<String> builder();
     for (val key : imd.getMappings().keys()) {
-    	result.add(key.value);
+      result.add(key.value);
     }
 
     return result.build();
   }
 
-  private File getExportFile(String typeName) throws IOException {
-    File exportFile = new File(directory, typeName + "." + FILE_EXTENSION);
+  private File getExportFile(String typeName, int slice) throws IOException {
+    val fileName = slices > 1 ? typeName + "-" + slice : typeName;
+    val fileExtension = legacy ? LEGACY_FILE_EXTENSION : FILE_EXTENSION;
+    val extension = compress ? fileExtension + "." + GZIP_EXTENSION : fileExtension;
+    File exportFile = new File(directory, fileName + "." + extension);
     Files.createParentDirs(exportFile);
 
     return exportFile;
   }
 
-  private SearchHits getSearchHits(String typeName) throws InterruptedException, ExecutionException {
-    SearchResponse searchResponse = esClient.prepareSearch(indexName) //
-        .setTypes(typeName) //
-        .setSize(100).execute().get();
-
-    return searchResponse.getHits();
-  }
-
 }